@@ -0,0 +1,79 @@
+/*
+ * BatchRenderBenchmark.java
+ *
+ *
+ * Compares drawing shapes one at a time, each with its own colour and
+ * stroke change, against ShapeBatcher which draws runs of shapes with the
+ * same colour and thickness as one path.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchRenderBenchmark {
+
+    @Param({"10000"})
+    public int shapeCount;
+
+    // sorted puts shapes of the same colour next to each other, which is
+    // what a drawing made one colour at a time looks like
+    @Param({"true", "false"})
+    public boolean sortedByColour;
+
+    private List<Shape> shapes;
+    private ShapeStore store;
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private final ShapeBatcher batcher = new ShapeBatcher();
+
+    @Setup
+    public void setUp() {
+        shapes = BenchmarkData.randomShapes(shapeCount, null, 3, 1024, 1024, 1);
+        if (sortedByColour) {
+            shapes.sort(Comparator.comparingInt((Shape s) -> s.getColour().getRGB()));
+        }
+        store = new ShapeStore();
+        store.addAll(shapes);
+        image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB);
+        g2d = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public void oneAtATime() {
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape aShape = shapes.get(i);
+            aShape.getShapeType().getDrawer().drawShape(g2d, aShape, 1.1F);
+        }
+    }
+
+    @Benchmark
+    public void batched() {
+        batcher.begin(g2d, 1.1F);
+        for (int i = 0; i < store.size(); i++) {
+            batcher.add(store, i);
+        }
+        batcher.end();
+    }
+}
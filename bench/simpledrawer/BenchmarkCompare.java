@@ -0,0 +1,117 @@
+/*
+ * BenchmarkCompare.java
+ *
+ *
+ * Compares two sets of JMH results written with "-rf json", e.g. the
+ * results of the last release and of the current build, and lists every
+ * benchmark that is slower by more than a given percentage.  Exits with
+ * status 1 if there are any so a CI build can fail on a regression.
+ * Benchmarks are matched by name and parameters; ones only in one of the
+ * files are listed but are not regressions.
+ *
+ * Usage: BenchmarkCompare baseline.json current.json [percent]
+ */
+package simpledrawer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class BenchmarkCompare {
+
+    /**
+     * Percentage a benchmark can get worse by before it counts as a
+     * regression, when none is given
+     */
+    public static final double DEFAULT_THRESHOLD = 10;
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: BenchmarkCompare baseline.json current.json [percent]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("new        %s %.3f %s%n", entry.getKey(), now.score, now.unit);
+                continue;
+            }
+            // how much worse it is in percent: throughput should go up,
+            // everything else is a time that should go down
+            double change = (now.score - before.score) / before.score * 100;
+            double worse = now.mode.equals("thrpt") ? -change : change;
+            String verdict = worse > threshold ? "REGRESSED" : worse < -threshold ? "improved" : "same";
+            if (worse > threshold) {
+                regressions++;
+            }
+            System.out.printf("%-10s %s %.3f -> %.3f %s (%+.1f%%)%n", verdict, entry.getKey(),
+                    before.score, now.score, now.unit, change);
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("missing    %s%n", name);
+            }
+        }
+        System.out.printf("%d regression(s) over %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    // the results in a file, by benchmark name and parameters
+    private static Map<String, Result> read(String file) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        try (Reader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray array = new JsonParser().parse(in).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject run = element.getAsJsonObject();
+                StringBuilder name = new StringBuilder(run.get("benchmark").getAsString());
+                if (run.has("params")) {
+                    // sorted so the same parameters always give the same name
+                    Map<String, String> params = new TreeMap<>();
+                    for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                        params.put(param.getKey(), param.getValue().getAsString());
+                    }
+                    name.append(params);
+                }
+                JsonObject metric = run.getAsJsonObject("primaryMetric");
+                results.put(name.toString(), new Result(run.get("mode").getAsString(),
+                        metric.get("score").getAsDouble(), metric.get("scoreUnit").getAsString()));
+            }
+        }
+        return results;
+    }
+
+    /*
+     * The primary score of one benchmark
+     */
+    private static final class Result {
+
+        final String mode;
+        final double score;
+        final String unit;
+
+        Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * BenchmarkData.java
+ *
+ *
+ * Generates repeatable drawings for the benchmarks.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class BenchmarkData {
+
+    // a drawing normally uses only a handful of colours
+    private static final Color[] COLOURS = {
+        Color.BLACK, Color.RED, Color.GREEN, Color.BLUE, Color.ORANGE,
+        Color.MAGENTA, Color.CYAN, Color.PINK, Color.GRAY, Color.YELLOW
+    };
+
+    // the same colours as they are named in a script file
+    private static final String[] COLOUR_NAMES = {
+        "black", "red", "green", "blue", "orange",
+        "magenta", "cyan", "pink", "gray", "yellow"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create random shapes spread over an area
+     *
+     * @param count number of shapes
+     * @param type type of every shape, or null for a mixture
+     * @param thickness line thickness, or 0 for a mixture from 1 to 10
+     * @param width width of the area
+     * @param height height of the area
+     * @param seed seed for the random numbers so runs are repeatable
+     * @return the shapes
+     */
+    public static List<Shape> randomShapes(int count, ShapeType type, int thickness,
+            int width, int height, long seed) {
+        Random random = new Random(seed);
+        ShapeFactory factory = new ShapeFactory();
+        ShapeType[] types = ShapeType.values();
+        List<Shape> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ShapeType st = type != null ? type : types[random.nextInt(types.length)];
+            List<Point> points = new ArrayList<>();
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            points.add(new Point(x, y));
+            if (st == ShapeType.OVAL) { // the second point is the size
+                points.add(new Point(5 + random.nextInt(60), 5 + random.nextInt(60)));
+            } else {
+                int vertices = st == ShapeType.LINE ? 2 : st == ShapeType.TRIANGLE ? 3 : 4;
+                for (int v = 1; v < vertices; v++) {
+                    points.add(new Point(x + random.nextInt(120) - 60, y + random.nextInt(120) - 60));
+                }
+            }
+            Color c = COLOURS[random.nextInt(COLOURS.length)];
+            int t = thickness > 0 ? thickness : 1 + random.nextInt(10);
+            shapes.add(factory.getShape(points, c, t, st));
+        }
+        return shapes;
+    }
+
+    /**
+     * Write a script file of random lines and ovals in the format read by
+     * ShapeEventGeneratorFromXML
+     *
+     * @param file the file to write
+     * @param count number of shapes
+     * @param width width of the area
+     * @param height height of the area
+     * @param seed seed for the random numbers so runs are repeatable
+     * @throws IOException - problem writing the file
+     */
+    public static void writeXmlScript(Path file, int count, int width, int height, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<shape_script>\n");
+            for (int i = 0; i < count; i++) {
+                boolean oval = random.nextInt(4) == 0;
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                out.write("    <shape>\n        <type>" + (oval ? "oval" : "line") + "</type>\n");
+                out.write("        <start>\n            <x>" + x + "</x>\n            <y>" + y
+                        + "</y>\n        </start>\n");
+                out.write("        <end>\n            <x>" + (x + random.nextInt(120) - 60)
+                        + "</x>\n            <y>" + (y + random.nextInt(120) - 60)
+                        + "</y>\n        </end>\n");
+                out.write("        <colour>" + COLOUR_NAMES[random.nextInt(COLOUR_NAMES.length)]
+                        + "</colour>\n        <thickness>" + (1 + random.nextInt(10))
+                        + "</thickness>\n    </shape>\n");
+            }
+            out.write("</shape_script>\n");
+        }
+    }
+
+    /**
+     * Write a file of random lines and ovals in the format read by
+     * ShapeEventGeneratorFromJSON
+     *
+     * @param file the file to write
+     * @param count number of shapes
+     * @param width width of the area
+     * @param height height of the area
+     * @param seed seed for the random numbers so runs are repeatable
+     * @throws IOException - problem writing the file
+     */
+    public static void writeJsonScript(Path file, int count, int width, int height, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        ShapeStore store = new ShapeStore(count);
+        int[] x = new int[2];
+        int[] y = new int[2];
+        for (int i = 0; i < count; i++) {
+            boolean oval = random.nextInt(4) == 0;
+            x[0] = random.nextInt(width);
+            y[0] = random.nextInt(height);
+            x[1] = x[0] + random.nextInt(120) - 60;
+            y[1] = y[0] + random.nextInt(120) - 60;
+            store.add(oval ? ShapeType.OVAL : ShapeType.LINE, COLOURS[random.nextInt(COLOURS.length)].getRGB(),
+                    1 + random.nextInt(10), x, y, 2);
+        }
+        new ShapeExporter().writeJSON(store, file);
+    }
+}
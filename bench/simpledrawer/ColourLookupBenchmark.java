@@ -0,0 +1,70 @@
+/*
+ * ColourLookupBenchmark.java
+ *
+ *
+ * Compares ShapeEvent.setColourByString, which uses ColourTable, against the
+ * reflection it used to do: Color.class.getField(colour.toUpperCase()) with
+ * an exception to fall back to black when the name is not found.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ColourLookupBenchmark.NAMES)
+public class ColourLookupBenchmark {
+
+    static final int NAMES = 8;
+
+    // "hits" are all colour names, "mixed" has some unknown names, which
+    // cost the reflection an exception each
+    @Param({"hits", "mixed"})
+    public String names;
+
+    private String[] colours;
+    private final ShapeEvent se = new ShapeEvent();
+
+    @Setup
+    public void setUp() {
+        colours = names.equals("hits")
+                ? new String[]{"red", "blue", "Green", "BLACK", "orange", "light_gray", "pink", "cyan"}
+                : new String[]{"red", "teal", "Green", "navy", "orange", "#FF8000", "pink", "lightGray"};
+    }
+
+    @Benchmark
+    public void table(Blackhole bh) {
+        for (String colour : colours) {
+            se.setColourByString(colour);
+            bh.consume(se.getColour());
+        }
+    }
+
+    @Benchmark
+    public void reflection(Blackhole bh) {
+        for (String colour : colours) {
+            Color c;
+            try {
+                Field f = Color.class.getField(colour.toUpperCase());
+                c = (Color) f.get(null);
+            } catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException ex) {
+                c = Color.BLACK;
+            }
+            bh.consume(c);
+        }
+    }
+}
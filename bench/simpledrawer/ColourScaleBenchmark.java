@@ -0,0 +1,94 @@
+/*
+ * ColourScaleBenchmark.java
+ *
+ *
+ * Compares ways of scaling colours by a brightness: a new Color for every
+ * colour the way each drawer's scaleColour() used to, ColourMath's lookup
+ * table one colour at a time, ColourMath's loop over a whole array, and
+ * BrightnessFilter over a full HD frame as the render worker does.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColourScaleBenchmark {
+
+    static final int COLOURS = 4096;
+
+    private static final float BRIGHTNESS = 1.1F;
+
+    private final int[] colours = new int[COLOURS];
+    private final int[] scaled = new int[COLOURS];
+    private BufferedImage frame;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < COLOURS; i++) {
+            colours[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        frame = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_ARGB_PRE);
+        frame.setRGB(0, 0, 64, 64, colours, 0, 64);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLOURS)
+    public void colourObjects(Blackhole bh) {
+        for (int argb : colours) {
+            Color c = new Color(argb);
+            int red = (int) (c.getRed() * BRIGHTNESS);
+            red = red > 255 ? 255 : red;
+            int green = (int) (c.getGreen() * BRIGHTNESS);
+            green = green > 255 ? 255 : green;
+            int blue = (int) (c.getBlue() * BRIGHTNESS);
+            blue = blue > 255 ? 255 : blue;
+            bh.consume(new Color(red, green, blue));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLOURS)
+    public int[] table() {
+        for (int i = 0; i < COLOURS; i++) {
+            scaled[i] = ColourMath.scale(colours[i], BRIGHTNESS);
+        }
+        return scaled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLOURS)
+    public int[] array() {
+        System.arraycopy(colours, 0, scaled, 0, COLOURS);
+        ColourMath.scale(scaled, 0, COLOURS, BRIGHTNESS);
+        return scaled;
+    }
+
+    /*
+     * Time per pixel.  The loop has no branches so the time does not depend
+     * on the colours; scaling up then down just keeps them from all ending
+     * up white.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * 1920 * 1080)
+    public BufferedImage frame() {
+        BrightnessFilter.apply(frame, 1.25F);
+        BrightnessFilter.apply(frame, 0.8F);
+        return frame;
+    }
+}
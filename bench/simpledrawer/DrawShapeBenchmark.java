@@ -0,0 +1,91 @@
+/*
+ * DrawShapeBenchmark.java
+ *
+ *
+ * Measures the cost of drawing one shape with the shared drawer from
+ * ShapeType.getDrawer() compared with creating a drawer for every shape.
+ *
+ * Run with JMH's GC profiler (-prof gc) to see the allocation per shape:
+ * gc.alloc.rate.norm for sharedDrawer should be 0 B/op for lines,
+ * triangles and quadrilaterals once the colour cache is warm.  Ovals still
+ * allocate, but inside Graphics2D.drawOval() rather than in our code.
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrawShapeBenchmark {
+
+    private static final int SHAPES = 1000;
+
+    @Param({"LINE", "OVAL", "TRIANGLE", "QUADRILATERAL"})
+    public ShapeType shapeType;
+
+    @Param({"1", "5"})
+    public int thickness;
+
+    private List<Shape> shapes;
+    private BufferedImage image;
+    private Graphics2D g2d;
+
+    @Setup
+    public void setUp() {
+        shapes = BenchmarkData.randomShapes(SHAPES, shapeType, thickness, 800, 600, 1);
+        image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB);
+        g2d = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void sharedDrawer() {
+        drawInterface drawer = shapeType.getDrawer();
+        for (int i = 0; i < shapes.size(); i++) {
+            drawer.drawShape(g2d, shapes.get(i), 1.1F);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void drawerPerShape() {
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape aShape = shapes.get(i);
+            drawInterface drawer;
+            switch (aShape.getShapeType()) {
+                case LINE:
+                    drawer = new LineDrawer(aShape);
+                    break;
+                case OVAL:
+                    drawer = new OvalDrawer(aShape);
+                    break;
+                case TRIANGLE:
+                    drawer = new TriangleDrawer(aShape);
+                    break;
+                default:
+                    drawer = new QuadrilateralDrawer(aShape);
+                    break;
+            }
+            drawer.drawShape(g2d, 1.1F);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JsonLoadBenchmark.java
+ *
+ *
+ * Measures loading a JSON file the way ShapeLoader does, without the GUI:
+ * ShapeEventGeneratorFromJSON reads the file and every event is turned into
+ * a shape by ShapeFactory and added to a ShapeStore.  Files of different
+ * sizes are loaded with a new event for every shape and with one event
+ * reused (see ShapeEventGeneratorFromJSON.setReuseEvents()).
+ *
+ */
+package simpledrawer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int shapeCount;
+
+    @Param({"false", "true"})
+    public boolean reuseEvents;
+
+    private Path script;
+
+    @Setup
+    public void setUp() throws IOException {
+        script = Files.createTempFile("shapes", ".json");
+        BenchmarkData.writeJsonScript(script, shapeCount, 1024, 1024, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public ShapeStore load() throws IOException {
+        final ShapeStore store = new ShapeStore();
+        final ShapeFactory factory = new ShapeFactory();
+        ShapeEventGeneratorFromJSON generator = new ShapeEventGeneratorFromJSON();
+        generator.setReuseEvents(reuseEvents);
+        generator.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                Shape aShape = factory.getShape(se);
+                if (aShape != null) {
+                    store.add(aShape);
+                }
+            }
+        });
+        generator.processScriptFile(script.toString());
+        return store;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * PaintBenchmark.java
+ *
+ *
+ * Measures DrawingPanel.paintComponent() painting into an off-screen image
+ * for drawings of different sizes.  paintComponent() only copies the last
+ * frame the render worker finished, so the benchmarks that change the
+ * drawing wait for the worker's frame and paint again, timing everything
+ * between the change and the new frame being on the image.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+
+    private static final int WIDTH = 1024, HEIGHT = 768;
+
+    @Param({"1000", "100000", "1000000"})
+    public int shapeCount;
+
+    private ShapeStore store;
+    private DrawingPanel panel;
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private boolean darker;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        store = new ShapeStore(shapeCount);
+        store.addAll(BenchmarkData.randomShapes(shapeCount, null, 0, WIDTH, HEIGHT, 1));
+        panel = new DrawingPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+        panel.setShapes(store);
+        frame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    // paint, wait for the worker to draw the frame asked for and paint it
+    private void frame() throws InterruptedException {
+        panel.paintComponent(g2d);
+        if (!panel.awaitFrame(10, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("no frame after 10 minutes");
+        }
+        panel.paintComponent(g2d);
+    }
+
+    /*
+     * The time the event dispatch thread spends in a repaint when the
+     * drawing has not changed
+     */
+    @Benchmark
+    public BufferedImage repaint() {
+        panel.paintComponent(g2d);
+        return image;
+    }
+
+    /*
+     * A new drawing: the index is rebuilt and every shape drawn
+     */
+    @Benchmark
+    public BufferedImage newDrawing() throws InterruptedException {
+        panel.setShapes(store);
+        frame();
+        return image;
+    }
+
+    /*
+     * A quarter turn, as from the rotate buttons
+     */
+    @Benchmark
+    public BufferedImage rotate() throws InterruptedException {
+        panel.rotate(90);
+        frame();
+        return image;
+    }
+
+    /*
+     * One step of a brightness scrollbar drag
+     */
+    @Benchmark
+    public BufferedImage brightness() throws InterruptedException {
+        darker = !darker;
+        panel.setCurrentBrightness(darker ? 0.3F : 0.7F);
+        frame();
+        return image;
+    }
+}
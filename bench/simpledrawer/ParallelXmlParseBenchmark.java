@@ -0,0 +1,85 @@
+/*
+ * ParallelXmlParseBenchmark.java
+ *
+ *
+ * Measures how reading a script file with
+ * ShapeEventGeneratorFromXML.processScriptFileInParallel scales with the
+ * number of threads.  The listener only counts the events so the time is
+ * all parsing.
+ *
+ */
+package simpledrawer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelXmlParseBenchmark {
+
+    @Param({"1000000"})
+    public int shapeCount;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path script;
+    private int count;
+
+    @Setup
+    public void setUp() throws IOException {
+        script = Files.createTempFile("shapes", ".xml");
+        BenchmarkData.writeXmlScript(script, shapeCount, 1024, 1024, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public int serial() throws Exception {
+        return parse(0);
+    }
+
+    @Benchmark
+    public int parallel() throws Exception {
+        return parse(threads);
+    }
+
+    /* threads of 0 means use processScriptFile */
+    private int parse(int threads) throws Exception {
+        count = 0;
+        ShapeEventGeneratorFromXML generator = new ShapeEventGeneratorFromXML();
+        generator.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                count++;
+            }
+        });
+        if (threads == 0) {
+            generator.processScriptFile(script.toString());
+        } else {
+            generator.processScriptFileInParallel(script.toString(), threads);
+        }
+        return count;
+    }
+}
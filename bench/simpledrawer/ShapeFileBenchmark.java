@@ -0,0 +1,93 @@
+/*
+ * ShapeFileBenchmark.java
+ *
+ *
+ * Measures saving and loading a drawing in the binary format of
+ * ShapeFileWriter and ShapeFileReader.  Run main() to also see how big the
+ * file is compared with the same drawing as an XML script.
+ *
+ */
+package simpledrawer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ShapeFileBenchmark {
+
+    @Param({"10000000"})
+    public int shapeCount;
+
+    private ShapeStore shapes;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        shapes = new ShapeStore(shapeCount);
+        shapes.addAll(BenchmarkData.randomShapes(shapeCount, null, 0, 4096, 4096, 1));
+        file = Files.createTempFile("shapes", ".spd");
+        new ShapeFileWriter().write(shapes, file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        new ShapeFileWriter().write(shapes, file);
+    }
+
+    @Benchmark
+    public ShapeStore read() throws IOException {
+        return new ShapeFileReader().read(file);
+    }
+
+    /**
+     * Print the size of the binary file and of the same number of shapes as
+     * an XML script
+     *
+     * @param args the number of shapes, 1000000 if not given
+     * @throws IOException - problem writing the files
+     */
+    public static void main(String[] args) throws IOException {
+        ShapeFileBenchmark benchmark = new ShapeFileBenchmark();
+        benchmark.shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        benchmark.setUp();
+        Path xml = Files.createTempFile("shapes", ".xml");
+        try {
+            BenchmarkData.writeXmlScript(xml, benchmark.shapeCount, 4096, 4096, 1);
+            long start = System.nanoTime();
+            ShapeStore loaded = benchmark.read();
+            long time = System.nanoTime() - start;
+            System.out.printf("%d shapes: binary %d bytes (%.1f per shape), XML %d bytes (%.1f per shape)%n",
+                    loaded.size(), Files.size(benchmark.file),
+                    (double) Files.size(benchmark.file) / loaded.size(),
+                    Files.size(xml), (double) Files.size(xml) / loaded.size());
+            System.out.printf("first load took %d ms%n", time / 1000000);
+        } finally {
+            Files.deleteIfExists(xml);
+            benchmark.tearDown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * ShapeStoreMemoryBenchmark.java
+ *
+ *
+ * Compares the heap used by a drawing held as a List of Shape objects with
+ * the same drawing held in a ShapeStore.  JMH measures time rather than
+ * retained memory so this is a plain program:
+ *
+ *   java -cp <classes> simpledrawer.ShapeStoreMemoryBenchmark [shapes]
+ *
+ * Give it a big heap (e.g. -Xmx4g) so the list fits.
+ */
+package simpledrawer;
+
+import java.util.List;
+
+public class ShapeStoreMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        long before = usedHeap();
+        List<Shape> shapes = BenchmarkData.randomShapes(count, ShapeType.LINE, 0, 4000, 4000, 1);
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        ShapeStore store = new ShapeStore(count);
+        store.addAll(shapes);
+        long storeBytes = usedHeap() - before;
+
+        System.out.printf("%d lines%n", count);
+        System.out.printf("List<Shape>: %,d bytes (%.1f per shape)%n", listBytes, (double) listBytes / count);
+        System.out.printf("ShapeStore:  %,d bytes (%.1f per shape)%n", storeBytes, (double) storeBytes / count);
+        System.out.printf("reduction:   %.1fx%n", (double) listBytes / storeBytes);
+
+        // keep both alive until they have been measured
+        if (shapes.size() != store.size()) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * TileRenderBenchmark.java
+ *
+ *
+ * Measures how drawing a large drawing into one image with TileRenderer
+ * scales with the number of threads, against drawing every shape on one
+ * thread with a ShapeBatcher.
+ *
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TileRenderBenchmark {
+
+    @Param({"1000000"})
+    public int shapeCount;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"256"})
+    public int tileSize;
+
+    private ShapeStore store;
+    private Rectangle area;
+    private ForkJoinPool pool;
+    private TileRenderer renderer;
+    private final ShapeBatcher batcher = new ShapeBatcher();
+
+    @Setup
+    public void setUp() {
+        store = new ShapeStore();
+        store.addAll(BenchmarkData.randomShapes(shapeCount, null, 0, 8192, 8192, 1));
+        area = TileRenderer.getBounds(store);
+        pool = new ForkJoinPool(threads);
+        renderer = new TileRenderer(pool, tileSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage serial() {
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.translate(-area.x, -area.y);
+        batcher.begin(g2d, 1);
+        for (int i = 0; i < store.size(); i++) {
+            batcher.add(store, i);
+        }
+        batcher.end();
+        g2d.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage tiled() {
+        return renderer.render(store, area, 1);
+    }
+}
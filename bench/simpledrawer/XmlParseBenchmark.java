@@ -0,0 +1,163 @@
+/*
+ * XmlParseBenchmark.java
+ *
+ *
+ * Compares reading a script file with ShapeEventGeneratorFromXML against
+ * the way it used to handle characters(): a trimmed String for every piece
+ * of text, then Integer.parseInt, toUpperCase and ShapeType.valueOf, and
+ * reflection to find the colour.
+ *
+ * Run with "-prof gc" to see the bytes allocated per parse as well as the
+ * time taken.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.SAXParserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.Attributes;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlParseBenchmark {
+
+    @Param({"1000000"})
+    public int shapeCount;
+
+    private Path script;
+
+    @Setup
+    public void setUp() throws IOException {
+        script = Files.createTempFile("shapes", ".xml");
+        BenchmarkData.writeXmlScript(script, shapeCount, 1024, 1024, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public void charBuffer(final Blackhole bh) throws Exception {
+        ShapeEventGeneratorFromXML generator = new ShapeEventGeneratorFromXML();
+        generator.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                bh.consume(se);
+            }
+        });
+        generator.processScriptFile(script.toString());
+    }
+
+    @Benchmark
+    public void stringPerCharacters(Blackhole bh) throws Exception {
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        XMLReader xmlReader = spf.newSAXParser().getXMLReader();
+        xmlReader.setContentHandler(new StringHandler(bh));
+        xmlReader.parse(script.toUri().toString());
+    }
+
+    /*
+     * The old content handler of ShapeEventGeneratorFromXML, less the
+     * listener list
+     */
+    private static class StringHandler extends DefaultHandler {
+
+        private final Blackhole bh;
+        private String currentTag = "";
+        private ShapeEvent currentShape;
+        private boolean processingStartPos;
+
+        StringHandler(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void startElement(String namespaceURI, String localName, String qName, Attributes atts) {
+            currentTag = localName;
+            switch (currentTag) {
+                case "shape":
+                    currentShape = new ShapeEvent();
+                    currentShape.setEventType("SHAPE");
+                    break;
+                case "start":
+                    processingStartPos = true;
+                    break;
+                case "end":
+                    processingStartPos = false;
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            String val = new String(ch, start, length).trim();
+            if (val.length() < 1) {
+                return;
+            }
+            switch (currentTag) {
+                case "type":
+                    currentShape.setShapeType(ShapeType.valueOf(val.toUpperCase()));
+                    break;
+                case "x":
+                    if (processingStartPos) {
+                        currentShape.setXStart(Integer.parseInt(val));
+                    } else {
+                        currentShape.setXEnd(Integer.parseInt(val));
+                    }
+                    break;
+                case "y":
+                    if (processingStartPos) {
+                        currentShape.setYStart(Integer.parseInt(val));
+                    } else {
+                        currentShape.setYEnd(Integer.parseInt(val));
+                    }
+                    break;
+                case "colour":
+                    try {
+                        Field f = Color.class.getField(val.toUpperCase());
+                        currentShape.setColour((Color) f.get(null));
+                    } catch (NoSuchFieldException | IllegalAccessException ex) {
+                        currentShape.setColour(Color.BLACK);
+                    }
+                    break;
+                case "thickness":
+                    currentShape.setThickness(Integer.parseInt(val));
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (localName.equals("shape")) {
+                bh.consume(currentShape);
+                currentShape = null;
+            }
+            currentTag = "";
+        }
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * AutosaveJournal.java
+ *
+ *
+ * Saves every change to the drawing as it happens so the drawing can be
+ * recovered if the program dies.  Saving the whole drawing after each change
+ * would take too long for a big drawing, so instead each change is appended
+ * to a write-ahead log (the journal) and the drawing is only saved in full,
+ * as a snapshot, once the journal has grown past a size limit.
+ *
+ * Changes are added to an in-memory buffer by the event dispatch thread and
+ * written by a background thread, which writes everything that has built up
+ * since its last write in one go and then forces it to the disk once.  While
+ * that is happening the next changes build up in another buffer, so a burst
+ * of changes costs one fsync rather than one each, and the user interface
+ * never waits for the disk.
+ *
+ * The journal records changes to the drawing rather than commands, so it can
+ * always be replayed on top of the snapshot it follows:
+ *
+ *   file:    int magic ("SPJL"), short version, short reserved,
+ *            long generation, then records up to the end of the file
+ *   record:  int length of the payload, int CRC32 of the payload, payload
+ *   payload: byte op, then for
+ *            ADD         byte type, int ARGB, int thickness,
+ *                        byte vertex count, int x and int y of each vertex
+ *            CLEAR       nothing
+ *            REMOVE      int number of shapes removed from the end
+ *            ROTATE      int degrees
+ *            BRIGHTNESS  float brightness
+ *            STATE       int rotation, float brightness
+ *            REPLACE     int rotation, float brightness
+ *
+ * All numbers are big-endian.  A journal always starts with a STATE or
+ * REPLACE record giving the rotation and brightness at the time of its
+ * snapshot.  STATE means the journal carries on from the one before, which
+ * compact() does; REPLACE means the drawing was replaced by replace(), so
+ * the journal before has nothing to do with it.  A record cut short by a
+ * crash fails its CRC check and it and anything after it are ignored.
+ *
+ * Each snapshot starts a new generation.  The journal of generation n is
+ * journal-n.log and its snapshot, saved with ShapeFileWriter, is
+ * snapshot-n.spd.  The new journal is started straight away and the snapshot
+ * written in the background; only once the snapshot is safely on the disk
+ * are the files of older generations deleted.  Recovery starts from the
+ * newest complete snapshot and replays every journal from its generation on.
+ * It stops before a REPLACE journal whose snapshot was not saved, as the
+ * changes in it are to a drawing that cannot be recovered; the drawing
+ * recovered is the one from before it was replaced.
+ * Only one snapshot is waited for at a time: the journal does not ask for
+ * another while one is being saved.
+ *
+ * Only one program can use a directory at a time, as starting a journal
+ * deletes the files left in it.  The directory is locked with a FileLock on
+ * its autosave.lock file until the journal is closed.
+ */
+package simpledrawer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+public class AutosaveJournal implements Closeable {
+
+    /**
+     * Receives the changes read back from the journal when recovering
+     */
+    public interface Replayer {
+
+        /**
+         * Replace the drawing, called once before any other change
+         *
+         * @param shapes the shapes in the snapshot
+         * @param rotation rotation of the drawing in degrees
+         * @param brightness brightness of the drawing
+         */
+        void reset(ShapeSource shapes, int rotation, float brightness);
+
+        void add(ShapeType st, int argb, int thickness, int[] x, int[] y, int count);
+
+        void clear();
+
+        /**
+         * @param count number of shapes to remove from the end of the drawing
+         */
+        void remove(int count);
+
+        void rotate(int amount);
+
+        void brightness(float brightness);
+    }
+
+    /**
+     * The journal size at which a new snapshot is taken by default
+     */
+    public static final long DEFAULT_COMPACT_SIZE = 8L << 20;
+
+    public static final int MAGIC = 0x53504a4c;
+    public static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte ADD = 1, CLEAR = 2, REMOVE = 3, ROTATE = 4, BRIGHTNESS = 5, STATE = 6, REPLACE = 7;
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+    private static final Pattern FILE_NAME = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|spd)");
+
+    private final Path directory;
+    private final long compactSize;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private ByteBuffer pending; // records not yet handed to the writer
+    private ByteBuffer spare; // the buffer the writer last wrote, for reuse
+    private final ArrayDeque<ByteBuffer> finished; // records of earlier generations not yet written
+    private long generation; // generation new records belong to
+    private long writtenGeneration; // generation of the journal the writer has open
+    private long size; // size the current journal will be once pending is written
+    private boolean started, closed;
+    private boolean writing; // the writer is writing records it has taken
+    private boolean stopped; // the writer has finished
+    private int unsaved; // snapshots queued or being saved
+    private final CRC32 crc = new CRC32();
+
+    private Thread writer;
+    private FileChannel channel; // only used by the writer once started
+    private final ExecutorService compactor;
+    private final FileLock directoryLock;
+
+    /**
+     * @param directory where the journal and snapshots are kept, created if
+     * it does not exist
+     * @throws IOException - the directory cannot be created or is being
+     * used by another journal
+     */
+    public AutosaveJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_COMPACT_SIZE);
+    }
+
+    /**
+     * @param directory where the journal and snapshots are kept, created if
+     * it does not exist
+     * @param compactSize journal size in bytes at which needsCompaction()
+     * starts returning true
+     * @throws IOException - the directory cannot be created or is being
+     * used by another journal
+     */
+    public AutosaveJournal(Path directory, long compactSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.compactSize = compactSize;
+        directoryLock = lockDirectory();
+        pending = ByteBuffer.allocate(64 * 1024);
+        spare = ByteBuffer.allocate(64 * 1024);
+        finished = new ArrayDeque<>();
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Autosave snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // lock the directory, failing if another program or journal has it
+    private FileLock lockDirectory() throws IOException {
+        FileChannel lockFile = FileChannel.open(directory.resolve("autosave.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock locked;
+        try {
+            locked = lockFile.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            locked = null; // held by another journal in this program
+        }
+        if (locked == null) {
+            lockFile.close();
+            throw new IOException(directory + " is being used by another SimpleDrawer");
+        }
+        return locked;
+    }
+
+    /**
+     * Read back the drawing saved by an earlier run.  Should be called
+     * before start().
+     *
+     * @param replayer receives the snapshot and the changes after it
+     * @return false if there was nothing to recover
+     * @throws IOException - problem reading the snapshot or journal
+     */
+    public boolean replay(Replayer replayer) throws IOException {
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        listFiles(journals, snapshots);
+        if (journals.isEmpty()) {
+            return false;
+        }
+        long first = snapshots.isEmpty() ? journals.firstKey() : snapshots.lastKey();
+        ShapeSource shapes = snapshots.containsKey(first)
+                ? new ShapeFileReader().read(snapshots.get(first)) : new ShapeStore();
+        boolean reset = false;
+        for (Map.Entry<Long, Path> entry : journals.tailMap(first).entrySet()) {
+            Path journal = entry.getValue();
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING,
+                        "{0} is not a journal, recovery stops before it", journal);
+                break;
+            }
+            buffer.position(HEADER_SIZE);
+            // the STATE or REPLACE record gives the state of the snapshot
+            byte op = 0;
+            int rotation = 0;
+            float brightness = 1;
+            if (buffer.remaining() >= 8 + 9 && payloadValid(buffer)) {
+                op = buffer.get(buffer.position() + 8);
+                if (op == STATE || op == REPLACE) {
+                    rotation = buffer.getInt(buffer.position() + 9);
+                    brightness = buffer.getFloat(buffer.position() + 13);
+                    buffer.position(buffer.position() + 8 + buffer.getInt(buffer.position()));
+                }
+            }
+            if (op == REPLACE && !snapshots.containsKey(entry.getKey())) {
+                Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING,
+                        "The drawing in {0} replaced the one before but was not saved,"
+                        + " recovery stops before it", journal);
+                break;
+            }
+            if (!reset) {
+                replayer.reset(shapes, rotation, brightness);
+                reset = true;
+            }
+            if (!replayRecords(buffer, replayer)) {
+                Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING,
+                        "{0} ends with an incomplete record, it was probably being written"
+                        + " when the program stopped", journal);
+                break; // any later journal carries on from changes that were lost
+            }
+        }
+        if (!reset) {
+            replayer.reset(shapes, 0, 1);
+        }
+        return true;
+    }
+
+    // check the record at the buffer's position is complete and has the right CRC
+    private boolean payloadValid(ByteBuffer buffer) {
+        int at = buffer.position();
+        if (buffer.limit() - at < 8) {
+            return false;
+        }
+        int length = buffer.getInt(at);
+        if (length < 1 || length > buffer.limit() - at - 8) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + at + 8, length);
+        return (int) crc.getValue() == buffer.getInt(at + 4);
+    }
+
+    // replay records up to the end of the buffer, false if a bad record was found first
+    private boolean replayRecords(ByteBuffer buffer, Replayer replayer) {
+        int[] x = new int[ShapeFileWriter.MAX_VERTICES];
+        int[] y = new int[ShapeFileWriter.MAX_VERTICES];
+        while (buffer.hasRemaining()) {
+            if (!payloadValid(buffer)) {
+                return false;
+            }
+            int length = buffer.getInt();
+            buffer.getInt(); // CRC, already checked
+            int next = buffer.position() + length;
+            switch (buffer.get()) {
+                case ADD:
+                    int type = buffer.get();
+                    int argb = buffer.getInt();
+                    int thickness = buffer.getInt();
+                    int count = buffer.get();
+                    if (type < 0 || type >= TYPES.length || count < 0 || count > x.length) {
+                        return false;
+                    }
+                    for (int v = 0; v < count; v++) {
+                        x[v] = buffer.getInt();
+                        y[v] = buffer.getInt();
+                    }
+                    replayer.add(TYPES[type], argb, thickness, x, y, count);
+                    break;
+                case CLEAR:
+                    replayer.clear();
+                    break;
+                case REMOVE:
+                    replayer.remove(buffer.getInt());
+                    break;
+                case ROTATE:
+                    replayer.rotate(buffer.getInt());
+                    break;
+                case BRIGHTNESS:
+                    replayer.brightness(buffer.getFloat());
+                    break;
+                default: // STATE and REPLACE only start a journal
+
+                    return false;
+            }
+            buffer.position(next);
+        }
+        return true;
+    }
+
+    /**
+     * Start journaling changes to a drawing, first saving it in a new
+     * snapshot.  The files left by an earlier run are deleted once the
+     * snapshot has been written.
+     *
+     * @param shapes the shapes in the drawing, which must not be changed
+     * afterwards (e.g. a view of a ShapeStore)
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness of the drawing
+     * @throws IOException - problem creating the journal
+     */
+    public void start(ShapeSource shapes, int rotation, float brightness) throws IOException {
+        synchronized (lock) {
+            if (started) {
+                throw new IllegalStateException("The journal has already been started");
+            }
+            TreeMap<Long, Path> journals = new TreeMap<>();
+            TreeMap<Long, Path> snapshots = new TreeMap<>();
+            listFiles(journals, snapshots);
+            long last = Math.max(journals.isEmpty() ? 0 : journals.lastKey(),
+                    snapshots.isEmpty() ? 0 : snapshots.lastKey());
+            generation = last + 1;
+            size = HEADER_SIZE;
+            putState(STATE, rotation, brightness);
+            channel = openJournal(generation);
+            writtenGeneration = generation;
+            started = true;
+            unsaved++;
+        }
+        long snapshotGeneration = writtenGeneration;
+        writer = new Thread(this::writeLoop, "Autosave journal");
+        writer.setDaemon(true);
+        writer.start();
+        compactor.execute(() -> saveSnapshot(snapshotGeneration, shapes));
+    }
+
+    /**
+     * Record that a shape has been added to the end of the drawing
+     *
+     * @param shapes the shapes in the drawing
+     * @param index position of the new shape
+     */
+    public void shapeAdded(ShapeSource shapes, int index) {
+        int count = shapes.getVertexCount(index);
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            int start = beginRecord(11 + count * 8);
+            pending.put(ADD);
+            pending.put((byte) shapes.getShapeType(index).ordinal());
+            pending.putInt(shapes.getArgb(index));
+            pending.putInt(shapes.getThickness(index));
+            pending.put((byte) count);
+            for (int v = 0; v < count; v++) {
+                pending.putInt(shapes.getX(index, v));
+                pending.putInt(shapes.getY(index, v));
+            }
+            endRecord(start);
+        }
+    }
+
+    /**
+     * Record that the drawing has been cleared
+     */
+    public void cleared() {
+        synchronized (lock) {
+            if (!closed) {
+                int start = beginRecord(1);
+                pending.put(CLEAR);
+                endRecord(start);
+            }
+        }
+    }
+
+    /**
+     * Record that shapes have been taken off the end of the drawing
+     *
+     * @param count number of shapes removed
+     */
+    public void removed(int count) {
+        synchronized (lock) {
+            if (!closed) {
+                int start = beginRecord(5);
+                pending.put(REMOVE).putInt(count);
+                endRecord(start);
+            }
+        }
+    }
+
+    /**
+     * Record that the drawing has been rotated
+     *
+     * @param amount degrees rotated, negative for left
+     */
+    public void rotated(int amount) {
+        synchronized (lock) {
+            if (!closed) {
+                int start = beginRecord(5);
+                pending.put(ROTATE).putInt(amount);
+                endRecord(start);
+            }
+        }
+    }
+
+    /**
+     * Record that the brightness has changed
+     *
+     * @param brightness the new brightness
+     */
+    public void brightnessChanged(float brightness) {
+        synchronized (lock) {
+            if (!closed) {
+                int start = beginRecord(5);
+                pending.put(BRIGHTNESS).putFloat(brightness);
+                endRecord(start);
+            }
+        }
+    }
+
+    private void putState(byte op, int rotation, float brightness) {
+        int start = beginRecord(9);
+        pending.put(op).putInt(rotation).putFloat(brightness);
+        endRecord(start);
+    }
+
+    // make room for a record and leave space for its length and CRC
+    private int beginRecord(int payloadLength) {
+        if (pending.remaining() < payloadLength + 8) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + payloadLength + 8));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        int start = pending.position();
+        pending.position(start + 8);
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int length = pending.position() - start - 8;
+        crc.reset();
+        crc.update(pending.array(), start + 8, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        size += length + 8;
+        lock.notifyAll();
+    }
+
+    /**
+     * @return true if the journal has grown big enough that a new snapshot
+     * should be taken with compact(), and the last snapshot has been saved
+     */
+    public boolean needsCompaction() {
+        synchronized (lock) {
+            return started && !closed && unsaved == 0 && size >= compactSize;
+        }
+    }
+
+    /**
+     * Start a new generation: changes from now on go in a new journal and the
+     * drawing is saved as its snapshot in the background.  The journal
+     * carries on from the one before.
+     *
+     * @param shapes the shapes in the drawing, which must not be changed
+     * afterwards (e.g. a view of a ShapeStore).  They are read on the
+     * snapshot thread.
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness of the drawing
+     */
+    public void compact(ShapeSource shapes, int rotation, float brightness) {
+        newGeneration(STATE, shapes, rotation, brightness);
+    }
+
+    /**
+     * Start a new generation for a drawing that replaces the whole of the
+     * old one, e.g. one loaded from a file.  Unlike compact() its journal
+     * does not carry on from the one before, so if the program dies before
+     * its snapshot is saved the old drawing is recovered, not the old
+     * drawing with the new one's changes on top.
+     *
+     * @param shapes the shapes in the new drawing, which must not be
+     * changed afterwards (e.g. a view of a ShapeStore).  They are read on
+     * the snapshot thread.
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness of the drawing
+     */
+    public void replace(ShapeSource shapes, int rotation, float brightness) {
+        newGeneration(REPLACE, shapes, rotation, brightness);
+    }
+
+    private void newGeneration(byte op, ShapeSource shapes, int rotation, float brightness) {
+        long snapshotGeneration;
+        synchronized (lock) {
+            if (!started || closed) {
+                return;
+            }
+            finished.add(pending);
+            pending = ByteBuffer.allocate(64 * 1024);
+            generation++;
+            size = HEADER_SIZE;
+            putState(op, rotation, brightness);
+            snapshotGeneration = generation;
+            unsaved++;
+        }
+        compactor.execute(() -> saveSnapshot(snapshotGeneration, shapes));
+    }
+
+    /*
+     * Runs on the writer thread, writing whatever records have built up and
+     * forcing them to disk, until the journal is closed
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                List<ByteBuffer> old;
+                ByteBuffer current;
+                long gen;
+                synchronized (lock) {
+                    while (!closed && pending.position() == 0 && finished.isEmpty()) {
+                        lock.wait();
+                    }
+                    if (pending.position() == 0 && finished.isEmpty()) {
+                        break; // closed and everything written
+                    }
+                    old = new ArrayList<>(finished);
+                    finished.clear();
+                    current = pending;
+                    pending = spare;
+                    gen = generation;
+                    writing = true;
+                }
+                // finish the journals of any earlier generations first
+                for (int i = 0; i < old.size(); i++) {
+                    write(old.get(i));
+                    channel.close();
+                    channel = openJournal(gen - old.size() + i + 1);
+                }
+                write(current);
+                synchronized (lock) {
+                    current.clear();
+                    spare = current;
+                    writtenGeneration = gen;
+                    writing = false;
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(AutosaveJournal.class.getName()).log(Level.SEVERE,
+                    "Autosave has stopped, changes are no longer being saved", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                stopped = true;
+                lock.notifyAll();
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    // write a buffer of records to the end of the journal and force it to disk
+    private void write(ByteBuffer records) throws IOException {
+        records.flip();
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        channel.force(false);
+    }
+
+    private FileChannel openJournal(long gen) throws IOException {
+        FileChannel journal = FileChannel.open(directory.resolve(String.format("journal-%d.log", gen)),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(gen);
+        header.flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        return journal;
+    }
+
+    /*
+     * Runs on the compactor thread.  The snapshot is written to a temporary
+     * file and renamed once it is on the disk, so a snapshot with the proper
+     * name is always complete.  Older files are only deleted once the
+     * writer has finished the old journal and started this generation's.
+     */
+    private void saveSnapshot(long gen, ShapeSource shapes) {
+        Path temporary = directory.resolve(String.format("snapshot-%d.tmp", gen));
+        try {
+            synchronized (lock) {
+                while (writtenGeneration < gen && !stopped) {
+                    lock.wait();
+                }
+                if (writtenGeneration < gen) {
+                    return; // the writer stopped before starting this generation
+                }
+            }
+            new ShapeFileWriter().write(shapes, temporary);
+            try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                snapshot.force(true);
+            }
+            Files.move(temporary, directory.resolve(String.format("snapshot-%d.spd", gen)),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            TreeMap<Long, Path> journals = new TreeMap<>();
+            TreeMap<Long, Path> snapshots = new TreeMap<>();
+            listFiles(journals, snapshots);
+            for (Path old : journals.headMap(gen).values()) {
+                Files.deleteIfExists(old);
+            }
+            for (Path old : snapshots.headMap(gen).values()) {
+                Files.deleteIfExists(old);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING,
+                    "Autosave could not save a snapshot, the journal is kept instead", ex);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // nothing more can be done
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                unsaved--;
+            }
+        }
+    }
+
+    private void listFiles(Map<Long, Path> journals, Map<Long, Path> snapshots) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    long gen = Long.parseLong(m.group(2));
+                    if (m.group(1).equals("journal") && m.group(3).equals("log")) {
+                        journals.put(gen, file);
+                    } else if (m.group(1).equals("snapshot") && m.group(3).equals("spd")) {
+                        snapshots.put(gen, file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until everything recorded so far is on the disk, including the
+     * snapshot being written if there is one
+     *
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return true if everything was saved in time
+     * @throws InterruptedException - interrupted while waiting
+     */
+    public boolean sync(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!stopped && (pending.position() > 0 || !finished.isEmpty() || writing)) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, left);
+            }
+        }
+        // snapshots are saved in order, so once a task queued now has run
+        // every snapshot queued before it has been saved
+        try {
+            compactor.submit(() -> {
+            }).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Write everything recorded so far, stop and unlock the directory.  The
+     * journal and snapshot are kept so the drawing is recovered when the
+     * program next starts.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            if (writer != null) {
+                writer.join();
+            }
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            directoryLock.channel().close(); // releases the lock
+        } catch (IOException ex) {
+            Logger.getLogger(AutosaveJournal.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * BrightnessFilter.java
+ *
+ *
+ * Changes the brightness of an image that has already been drawn, so the
+ * shapes can be drawn once at normal brightness and the brightness applied
+ * afterwards with one pass over the pixels, whatever the number of shapes.
+ * The pixels are scaled by ColourMath, the same sum scaleColour() does for
+ * each shape.  The shapes are drawn in opaque colours, so a pixel is either
+ * one shape's colour or transparent and the result is exactly what scaling
+ * every shape's colour would have drawn.
+ *
+ * Pixels that are neither opaque nor transparent are scaled as well, and
+ * kept within their alpha when the image is premultiplied.
+ */
+package simpledrawer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+public final class BrightnessFilter {
+
+    private BrightnessFilter() {
+    }
+
+    /**
+     * Scale the colours of an image by a brightness, in place
+     *
+     * @param image a TYPE_INT_ARGB, TYPE_INT_ARGB_PRE or TYPE_INT_RGB image
+     * @param brightness the brightness to scale by
+     */
+    public static void apply(BufferedImage image, float brightness) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE
+                && type != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("image type " + type);
+        }
+        if (brightness == 1) {
+            return;
+        }
+        boolean premultiplied = type == BufferedImage.TYPE_INT_ARGB_PRE;
+        // a row at a time through the raster, so the image stays one that
+        // Java2D can keep a copy of in video memory
+        WritableRaster raster = image.getRaster();
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            raster.getDataElements(0, y, width, 1, row);
+            apply(row, 0, width, premultiplied, brightness);
+            raster.setDataElements(0, y, width, 1, row);
+        }
+    }
+
+    /**
+     * Scale the colours of ARGB pixels by a brightness, in place
+     *
+     * @param pixels the pixels
+     * @param offset index of the first pixel to scale
+     * @param length number of pixels to scale
+     * @param premultiplied true if the colours are premultiplied by alpha
+     * @param brightness the brightness to scale by
+     */
+    public static void apply(int[] pixels, int offset, int length, boolean premultiplied, float brightness) {
+        if (premultiplied) {
+            ColourMath.scalePremultiplied(pixels, offset, length, brightness);
+        } else {
+            ColourMath.scale(pixels, offset, length, brightness);
+        }
+    }
+}
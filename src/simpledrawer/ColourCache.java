@@ -0,0 +1,126 @@
+/*
+ * ColourCache.java
+ *
+ *
+ * Remembers the colours shapes have been drawn with once their brightness
+ * has been scaled.  A drawing normally uses only a few colours so instead
+ * of creating a new Color for every shape on every repaint the scaled
+ * colour is created once and then looked up.
+ *
+ * The cache only holds colours for one brightness at a time, which is all
+ * a repaint needs; changing the brightness empties it.  Each thread has its
+ * own cache so no locking is needed.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+public final class ColourCache {
+
+    private static final ThreadLocal<ColourCache> CACHES = new ThreadLocal<ColourCache>() {
+        @Override
+        protected ColourCache initialValue() {
+            return new ColourCache();
+        }
+    };
+
+    private float brightness = Float.NaN; // brightness of the cached colours
+
+    // open addressing hash table: keys are RGB values, an empty slot has a
+    // null colour
+    private int[] keys = new int[64];
+    private Color[] colours = new Color[64];
+    private int size;
+
+    private ColourCache() {
+    }
+
+    /**
+     * Get a colour scaled by a brightness, creating it only the first time
+     * it is asked for.
+     *
+     * @param c the colour of the shape
+     * @param currentBrightness the brightness to scale by
+     * @param scaler does the scaling when the colour is not already cached
+     * @return the scaled colour, equal to scaler.scaleColour(c, currentBrightness)
+     */
+    public static Color getScaledColour(Color c, float currentBrightness, scaleColour scaler) {
+        return CACHES.get().get(c.getRGB(), c, currentBrightness, scaler);
+    }
+
+    /**
+     * Get a colour held as an ARGB value scaled by a brightness with
+     * ColourMath, as the drawers do.  A Color is only created for the first
+     * shape with that colour.
+     *
+     * @param argb the colour of the shape (see Color.getRGB())
+     * @param currentBrightness the brightness to scale by
+     * @return the scaled colour, which is opaque
+     */
+    public static Color getScaledColour(int argb, float currentBrightness) {
+        return CACHES.get().get(argb, null, currentBrightness, null);
+    }
+
+    /**
+     * Get a colour held as an ARGB value scaled by a brightness. A Color is
+     * only created for the first shape with that colour.
+     *
+     * @param argb the colour of the shape (see Color.getRGB())
+     * @param currentBrightness the brightness to scale by
+     * @param scaler does the scaling when the colour is not already cached
+     * @return the scaled colour
+     */
+    public static Color getScaledColour(int argb, float currentBrightness, scaleColour scaler) {
+        return CACHES.get().get(argb, null, currentBrightness, scaler);
+    }
+
+    private Color get(int argb, Color c, float currentBrightness, scaleColour scaler) {
+        if (Float.floatToIntBits(currentBrightness) != Float.floatToIntBits(brightness)) {
+            Arrays.fill(colours, null);
+            size = 0;
+            brightness = currentBrightness;
+        }
+        // scaling ignores the alpha so only the RGB part matters
+        int rgb = argb & 0xffffff;
+        int mask = keys.length - 1;
+        int slot = hash(rgb) & mask;
+        while (colours[slot] != null) {
+            if (keys[slot] == rgb) {
+                return colours[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        Color scaled = scaler == null ? new Color(ColourMath.scale(rgb, currentBrightness))
+                : scaler.scaleColour(c != null ? c : new Color(argb, true), currentBrightness);
+        keys[slot] = rgb;
+        colours[slot] = scaled;
+        if (++size > keys.length / 2) {
+            grow();
+        }
+        return scaled;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Color[] oldColours = colours;
+        keys = new int[oldKeys.length * 2];
+        colours = new Color[oldColours.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldColours[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (colours[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                colours[slot] = oldColours[i];
+            }
+        }
+    }
+
+    private static int hash(int rgb) {
+        int h = rgb * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ColourMath.java
+ *
+ *
+ * The brightness scaling used everywhere a colour is made brighter or
+ * darker, worked on colours held as ARGB ints (see Color.getRGB()) rather
+ * than Color objects.  Each of red, green and blue is multiplied by the
+ * brightness and kept no higher than 255:
+ *
+ *     min(255, (int) (v * brightness))
+ *
+ * A single colour is scaled by looking its red, green and blue up in a 256
+ * entry table, made once for each brightness and kept until a different
+ * brightness is asked for.  Arrays of colours are scaled by one loop with
+ * no branches in it, which the JIT can unroll, working out the same sum.
+ * Alpha is left as it is.
+ */
+package simpledrawer;
+
+public final class ColourMath {
+
+    // the table for the last brightness asked for; while a drawing is drawn
+    // or the brightness scrollbar is held still every colour uses the same
+    private static volatile Table last = new Table(1);
+
+    private ColourMath() {
+    }
+
+    /**
+     * Get the lookup table for a brightness
+     *
+     * @param brightness the brightness to scale by
+     * @return 256 entries, entry v holding min(255, (int) (v * brightness));
+     * must not be changed
+     */
+    public static int[] table(float brightness) {
+        Table table = last;
+        if (Float.floatToIntBits(table.brightness) != Float.floatToIntBits(brightness)) {
+            table = new Table(brightness);
+            last = table;
+        }
+        return table.values;
+    }
+
+    /**
+     * Scale one colour by a brightness
+     *
+     * @param argb the colour
+     * @param brightness the brightness to scale by
+     * @return the colour with its red, green and blue scaled and the same
+     * alpha
+     */
+    public static int scale(int argb, float brightness) {
+        int[] table = table(brightness);
+        return (argb & 0xff000000) | (table[(argb >> 16) & 0xff] << 16)
+                | (table[(argb >> 8) & 0xff] << 8) | table[argb & 0xff];
+    }
+
+    /**
+     * Scale an array of colours by a brightness, in place
+     *
+     * @param colours the colours
+     * @param offset index of the first colour to scale
+     * @param length number of colours to scale
+     * @param brightness the brightness to scale by
+     */
+    public static void scale(int[] colours, int offset, int length, float brightness) {
+        for (int i = offset; i < offset + length; i++) {
+            int argb = colours[i];
+            int red = Math.min(255, (int) (((argb >> 16) & 0xff) * brightness));
+            int green = Math.min(255, (int) (((argb >> 8) & 0xff) * brightness));
+            int blue = Math.min(255, (int) ((argb & 0xff) * brightness));
+            colours[i] = (argb & 0xff000000) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    /**
+     * Scale an array of colours premultiplied by their alpha, in place.  The
+     * colours are kept no higher than the alpha, so an opaque colour is
+     * scaled as by scale() and a transparent one stays 0.
+     *
+     * @param colours the colours
+     * @param offset index of the first colour to scale
+     * @param length number of colours to scale
+     * @param brightness the brightness to scale by
+     */
+    public static void scalePremultiplied(int[] colours, int offset, int length, float brightness) {
+        for (int i = offset; i < offset + length; i++) {
+            int argb = colours[i];
+            int alpha = argb >>> 24;
+            int red = Math.min(alpha, (int) (((argb >> 16) & 0xff) * brightness));
+            int green = Math.min(alpha, (int) (((argb >> 8) & 0xff) * brightness));
+            int blue = Math.min(alpha, (int) ((argb & 0xff) * brightness));
+            colours[i] = (argb & 0xff000000) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    /*
+     * A brightness and its table
+     */
+    private static final class Table {
+
+        final float brightness;
+        final int[] values = new int[256];
+
+        Table(float brightness) {
+            this.brightness = brightness;
+            for (int v = 0; v < 256; v++) {
+                values[v] = Math.min(255, (int) (v * brightness));
+            }
+        }
+    }
+}
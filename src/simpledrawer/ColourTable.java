@@ -0,0 +1,257 @@
+/*
+ * ColourTable.java
+ *
+ *
+ * Looks up the Color for a colour name read from a script file, e.g. "red"
+ * gives Color.RED.  The table starts with the upper case constants of class
+ * Color (BLACK, LIGHT_GRAY, ...) and more names can be registered.  Names
+ * are matched ignoring case, and "#RRGGBB" gives the colour with those hex
+ * red, green and blue values.  A name that is not found gives null rather
+ * than an exception.
+ *
+ * The table is built once using reflection.  Names are looked up straight
+ * from the parser's character array without making a String, using an
+ * open addressing hash table whose hash ignores case.  Registering a name
+ * builds a new table so lookups never need to lock.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+
+public final class ColourTable {
+
+    // the current table, replaced as a whole when a name is registered
+    private static volatile Table table;
+
+    static {
+        Table initial = new Table(64);
+        for (Field f : Color.class.getFields()) {
+            if (isColourConstant(f)) {
+                try {
+                    initial.put(f.getName().toCharArray(), (Color) f.get(null));
+                } catch (IllegalAccessException ex) {
+                    throw new ExceptionInInitializerError(ex);
+                }
+            }
+        }
+        table = initial;
+    }
+
+    private ColourTable() {
+    }
+
+    /*
+     * Only the upper case names are used, as colour.toUpperCase() could only
+     * ever match those.
+     */
+    private static boolean isColourConstant(Field f) {
+        return f.getType() == Color.class && Modifier.isStatic(f.getModifiers())
+                && f.getName().equals(f.getName().toUpperCase());
+    }
+
+    /**
+     * Look up a colour name held in part of a character array
+     *
+     * @param ch array holding the name
+     * @param start position of the first character of the name
+     * @param length number of characters in the name
+     * @return the colour, or null if there is no colour with that name
+     */
+    public static Color lookup(char[] ch, int start, int length) {
+        if (length > 0 && ch[start] == '#') {
+            return parseHex(ch, start, length);
+        }
+        return table.get(ch, start, length);
+    }
+
+    /**
+     * @param name name of the colour, in any case, or "#RRGGBB"
+     * @return the colour, or null if there is no colour with that name
+     */
+    public static Color lookup(String name) {
+        if (!name.isEmpty() && name.charAt(0) == '#') {
+            return parseHex(name.toCharArray(), 0, name.length());
+        }
+        return table.get(name);
+    }
+
+    /**
+     * Find the name to write for a colour, the reverse of lookup()
+     *
+     * @param argb colour as an ARGB value (see Color.getRGB())
+     * @return the colour's name in lower case if it has one, otherwise
+     * "#rrggbb" for an opaque colour, or null for a transparent colour that
+     * has no name
+     */
+    public static String nameOf(int argb) {
+        Table current = table;
+        String best = null;
+        for (int slot = 0; slot < current.names.length; slot++) {
+            if (current.names[slot] != null && current.colours[slot].getRGB() == argb) {
+                // if several names have the colour always pick the same one:
+                // the shortest, then the first in alphabetical order
+                String name = new String(current.names[slot]).toLowerCase(Locale.ROOT);
+                if (best == null || name.length() < best.length()
+                        || (name.length() == best.length() && name.compareTo(best) < 0)) {
+                    best = name;
+                }
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        if ((argb >>> 24) != 0xFF) {
+            return null;
+        }
+        return String.format("#%06x", argb & 0xFFFFFF);
+    }
+
+    /**
+     * Add a colour name, or change the colour of an existing name, e.g. so
+     * a script can use "teal"
+     *
+     * @param name name of the colour; case does not matter
+     * @param colour the colour
+     */
+    public static synchronized void register(String name, Color colour) {
+        if (name.isEmpty() || name.charAt(0) == '#') {
+            throw new IllegalArgumentException("Not a valid colour name: " + name);
+        }
+        char[] upper = new char[name.length()];
+        for (int i = 0; i < upper.length; i++) {
+            upper[i] = upperCase(name.charAt(i));
+        }
+        Table current = table;
+        // copy into a new table, bigger if the current one would get over half full
+        Table copy = new Table(current.size * 2 + 2 > current.names.length
+                ? current.names.length * 2 : current.names.length);
+        for (int slot = 0; slot < current.names.length; slot++) {
+            if (current.names[slot] != null) {
+                copy.put(current.names[slot], current.colours[slot]);
+            }
+        }
+        copy.put(upper, colour);
+        table = copy;
+    }
+
+    /*
+     * "#RRGGBB" as an opaque colour
+     */
+    private static Color parseHex(char[] ch, int start, int length) {
+        if (length != 7) {
+            return null;
+        }
+        int rgb = 0;
+        for (int i = start + 1; i < start + 7; i++) {
+            int digit = Character.digit(ch[i], 16);
+            if (digit < 0) {
+                return null;
+            }
+            rgb = rgb << 4 | digit;
+        }
+        return new Color(rgb);
+    }
+
+    private static int hash(char[] ch, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + upperCase(ch[i]);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * An open addressing hash table of upper case names.  Both arrays have a
+     * power of two length and unused slots are null.
+     */
+    private static final class Table {
+
+        final char[][] names;
+        final Color[] colours;
+        int size;
+
+        Table(int capacity) {
+            names = new char[capacity][];
+            colours = new Color[capacity];
+        }
+
+        /* name must already be upper case */
+        void put(char[] name, Color colour) {
+            int mask = names.length - 1;
+            int slot = hash(name, 0, name.length) & mask;
+            while (names[slot] != null && !matches(names[slot], name, 0, name.length)) {
+                slot = (slot + 1) & mask;
+            }
+            if (names[slot] == null) {
+                names[slot] = name;
+                size++;
+            }
+            colours[slot] = colour;
+        }
+
+        Color get(char[] ch, int start, int length) {
+            int mask = names.length - 1;
+            int slot = hash(ch, start, length) & mask;
+            char[] name;
+            while ((name = names[slot]) != null) {
+                if (matches(name, ch, start, length)) {
+                    return colours[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /* the same as get(char[], int, int) for a String */
+        Color get(String s) {
+            int mask = names.length - 1;
+            int h = 0;
+            for (int i = 0; i < s.length(); i++) {
+                h = 31 * h + upperCase(s.charAt(i));
+            }
+            int slot = (h ^ (h >>> 16)) & mask;
+            char[] name;
+            while ((name = names[slot]) != null) {
+                if (matches(name, s)) {
+                    return colours[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    private static boolean matches(char[] name, String s) {
+        if (name.length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != upperCase(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(char[] name, char[] ch, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != upperCase(ch[start + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Colour names are plain ASCII so only a to z need changing
+     */
+    static char upperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
@@ -17,25 +17,65 @@
 package simpledrawer;
 
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 
 public class DrawerMain extends javax.swing.JFrame {
     int currentRed, currentGreen, currentBlue;
     private DrawingPanel drawingPanel; // the drawing panel
+    private ShapeLoader shapeLoader; // loads shapes from a file in the background
 
     /**
      * Initialise the components in the screen and then cast a reference to the
      * panel that will be drawn on so it can be used elsewhere.
      */
     public DrawerMain() {
+        this(false, 0);
+    }
+
+    /**
+     * @param useCanvas show the drawing on a DrawingCanvas with its own
+     * render loop instead of on the drawing panel
+     * @param frameRate most frames the canvas draws each second, 0 for no cap
+     */
+    public DrawerMain(boolean useCanvas, int frameRate) {
         initComponents();
         drawingPanel = (DrawingPanel) panDrawingArea;
+        if (useCanvas) {
+            // the panel still holds the drawing and watches the mouse
+            getContentPane().remove(panDrawingArea);
+            getContentPane().add(new DrawingCanvas(drawingPanel, frameRate), java.awt.BorderLayout.CENTER);
+        }
+        startAutosave();
+    }
+
+    /*
+     * Recover the drawing left by the last run from the autosave journal and
+     * save every change from now on.  If the journal cannot be used, e.g.
+     * because another SimpleDrawer has it, the program carries on without
+     * autosave.
+     */
+    private void startAutosave() {
+        Path directory = Paths.get(System.getProperty("user.home"), ".simpledrawer", "autosave");
+        try {
+            AutosaveJournal journal = new AutosaveJournal(directory);
+            drawingPanel.recover(journal);
+            // write the last changes when the window is closed
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "Autosave shutdown"));
+        } catch (IOException ex) {
+            Logger.getLogger(DrawerMain.class.getName()).log(Level.WARNING,
+                    "Autosave is off, changes will not be recovered after a crash", ex);
+        }
     }
 
     /**
@@ -79,9 +119,14 @@ public class DrawerMain extends javax.swing.JFrame {
         btnRight = new javax.swing.JButton();
         panButtons = new javax.swing.JPanel();
         btnClear = new javax.swing.JButton();
+        btnUndo = new javax.swing.JButton();
+        btnRedo = new javax.swing.JButton();
         panLoad = new javax.swing.JPanel();
         btnLoadXML = new javax.swing.JButton();
         btnLoadJSON = new javax.swing.JButton();
+        btnSaveXML = new javax.swing.JButton();
+        btnSaveJSON = new javax.swing.JButton();
+        btnSavePNG = new javax.swing.JButton();
         panShape = new javax.swing.JPanel();
         radLine = new javax.swing.JRadioButton();
         radOval = new javax.swing.JRadioButton();
@@ -296,6 +341,22 @@ public class DrawerMain extends javax.swing.JFrame {
         });
         panButtons.add(btnClear);
 
+        btnUndo.setText("Undo");
+        btnUndo.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnUndoActionPerformed(evt);
+            }
+        });
+        panButtons.add(btnUndo);
+
+        btnRedo.setText("Redo");
+        btnRedo.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnRedoActionPerformed(evt);
+            }
+        });
+        panButtons.add(btnRedo);
+
         panMoreControls.add(panButtons);
 
         btnLoadXML.setText("load XML");
@@ -314,6 +375,30 @@ public class DrawerMain extends javax.swing.JFrame {
         });
         panLoad.add(btnLoadJSON);
 
+        btnSaveXML.setText("save XML");
+        btnSaveXML.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnSaveXMLActionPerformed(evt);
+            }
+        });
+        panLoad.add(btnSaveXML);
+
+        btnSaveJSON.setText("save JSON");
+        btnSaveJSON.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnSaveJSONActionPerformed(evt);
+            }
+        });
+        panLoad.add(btnSaveJSON);
+
+        btnSavePNG.setText("save PNG");
+        btnSavePNG.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnSavePNGActionPerformed(evt);
+            }
+        });
+        panLoad.add(btnSavePNG);
+
         panMoreControls.add(panLoad);
 
         panControls.add(panMoreControls, java.awt.BorderLayout.SOUTH);
@@ -385,6 +470,16 @@ public class DrawerMain extends javax.swing.JFrame {
         drawingPanel.clearDisplay();
     }//GEN-LAST:event_btnClearActionPerformed
 
+    /* undo the last change to the drawing */
+    private void btnUndoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnUndoActionPerformed
+        drawingPanel.undo();
+    }//GEN-LAST:event_btnUndoActionPerformed
+
+    /* redo the last change undone */
+    private void btnRedoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnRedoActionPerformed
+        drawingPanel.redo();
+    }//GEN-LAST:event_btnRedoActionPerformed
+
     /* set the drawing colours */
     private void scrColourAdjustmentHandler(java.awt.event.AdjustmentEvent evt) {//GEN-FIRST:event_scrColourAdjustmentHandler
         
@@ -445,17 +540,30 @@ public class DrawerMain extends javax.swing.JFrame {
 
     }//GEN-LAST:event_scrBrightnessAdjustmentValueChanged
 
+    /* replace the drawing with the shapes in an XML script file */
     private void btnLoadXMLActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnLoadXMLActionPerformed
-
-
-
+        loadShapes(new FileNameExtensionFilter("XML shape scripts", "xml"));
     }//GEN-LAST:event_btnLoadXMLActionPerformed
 
+    /* replace the drawing with the shapes in a JSON file */
     private void btnLoadJSONActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnLoadJSONActionPerformed
+        loadShapes(new FileNameExtensionFilter("JSON shape files", "json"));
+    }//GEN-LAST:event_btnLoadJSONActionPerformed
 
-        
+    /* save the drawing as an XML script file */
+    private void btnSaveXMLActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnSaveXMLActionPerformed
+        saveShapes(new FileNameExtensionFilter("XML shape scripts", "xml"));
+    }//GEN-LAST:event_btnSaveXMLActionPerformed
 
-    }//GEN-LAST:event_btnLoadJSONActionPerformed
+    /* save the drawing as a JSON file */
+    private void btnSaveJSONActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnSaveJSONActionPerformed
+        saveShapes(new FileNameExtensionFilter("JSON shape files", "json"));
+    }//GEN-LAST:event_btnSaveJSONActionPerformed
+
+    /* save the drawing as a picture */
+    private void btnSavePNGActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnSavePNGActionPerformed
+        saveShapes(new FileNameExtensionFilter("PNG images", "png"));
+    }//GEN-LAST:event_btnSavePNGActionPerformed
 
     private void btnReset1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnReset1ActionPerformed
         scrRed.setValue(0);
@@ -481,6 +589,41 @@ public class DrawerMain extends javax.swing.JFrame {
         // TODO add your handling code here:
     }//GEN-LAST:event_txtBlueActionPerformed
     
+    /* let the user pick a file and replace the drawing with the shapes in it.
+     * The file is loaded in the background and the shapes appear as they
+     * are read.
+     */
+    private void loadShapes(FileNameExtensionFilter filter) {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setFileFilter(filter);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        if (shapeLoader != null) { // stop any load that is still running
+            shapeLoader.cancel(true);
+        }
+        drawingPanel.setShapes(new ShapeStore());
+        shapeLoader = new ShapeLoader(drawingPanel, chooser.getSelectedFile().getPath());
+        shapeLoader.execute();
+    }
+
+    /* let the user pick a file and save the drawing to it.  The file is
+     * written in the background from a copy of the shapes taken now.
+     */
+    private void saveShapes(FileNameExtensionFilter filter) {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setFileFilter(filter);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String filename = chooser.getSelectedFile().getPath();
+        String extension = "." + filter.getExtensions()[0];
+        if (!filename.toLowerCase().endsWith(extension)) {
+            filename += extension;
+        }
+        new ShapeSaver(drawingPanel, filename).execute();
+    }
+
     /* action whatever change has been made to the line thickness */
     private void handleThickness() {
         int thickness = Integer.parseInt(txtThickness.getText());
@@ -493,9 +636,85 @@ public class DrawerMain extends javax.swing.JFrame {
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        // --canvas draws on a canvas with its own render loop, --fps=n caps
+        // its frame rate, --software turns off the accelerated Java2D
+        // pipelines and --frame-stats logs the times between frames on exit
+        boolean useCanvas = false;
+        boolean software = false;
+        boolean frameStats = false;
+        int frameRate = DrawingCanvas.DEFAULT_FRAME_RATE;
+        for (String arg : args) {
+            if (arg.equals("--canvas")) {
+                useCanvas = true;
+            } else if (arg.equals("--software")) {
+                software = true;
+            } else if (arg.equals("--frame-stats")) {
+                frameStats = true;
+            } else if (arg.startsWith("--fps=")) {
+                frameRate = parseFrameRate(arg.substring("--fps=".length()));
+                if (frameRate < 0) {
+                    System.err.println("--fps needs a whole number of frames per second, 0 for no cap: " + arg);
+                    printUsage();
+                    System.exit(2);
+                }
+            } else {
+                System.err.println("unknown option " + arg);
+                printUsage();
+                System.exit(2);
+            }
+        }
+        // there is no graphics hardware to use on a build server
+        if (software || GraphicsEnvironment.isHeadless() || System.getenv("CI") != null) {
+            useSoftwarePipeline();
+        }
+
+        DrawerMain drawer = new DrawerMain(useCanvas, frameRate);
+        if (frameStats) {
+            FramePacer frameTimes = drawer.drawingPanel.getFrameTimes();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> Logger.getLogger(DrawerMain.class.getName())
+                    .log(Level.INFO, "frame times: {0}", frameTimes), "Frame stats"));
+        }
+        drawer.setVisible(true);
+
+    }
+
+    // the frame rate given to --fps, or -1 if it is not a number of 0 or more
+    private static int parseFrameRate(String value) {
+        try {
+            return Math.max(-1, Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
 
-        new DrawerMain().setVisible(true);
+    private static void printUsage() {
+        System.err.println("usage: DrawerMain [--canvas] [--fps=n] [--software] [--frame-stats]");
+        System.err.println("  --canvas       draw on a canvas with its own render loop");
+        System.err.println("  --fps=n        most frames the canvas draws each second, 0 for no cap (default "
+                + DrawingCanvas.DEFAULT_FRAME_RATE + ")");
+        System.err.println("  --software     use only the software Java2D pipeline");
+        System.err.println("  --frame-stats  log the times between frames on exit");
+    }
 
+    /*
+     * Turn off the OpenGL, XRender and Direct3D pipelines so Java2D draws
+     * everything in software.  The properties are read once when the
+     * graphics environment starts, so this must be called before any window
+     * is made.  Properties set on the command line are left alone.
+     */
+    private static void useSoftwarePipeline() {
+        String[][] properties = {
+            {"sun.java2d.opengl", "false"},
+            {"sun.java2d.xrender", "false"},
+            {"sun.java2d.d3d", "false"},
+            {"sun.java2d.noddraw", "true"},
+            {"sun.java2d.pmoffscreen", "false"}
+        };
+        for (String[] property : properties) {
+            if (System.getProperty(property[0]) == null) {
+                System.setProperty(property[0], property[1]);
+            }
+        }
     }
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton btnBackground;
@@ -503,8 +722,13 @@ public class DrawerMain extends javax.swing.JFrame {
     private javax.swing.JButton btnLeft;
     private javax.swing.JButton btnLoadJSON;
     private javax.swing.JButton btnLoadXML;
+    private javax.swing.JButton btnRedo;
     private javax.swing.JButton btnReset1;
     private javax.swing.JButton btnRight;
+    private javax.swing.JButton btnSaveJSON;
+    private javax.swing.JButton btnSavePNG;
+    private javax.swing.JButton btnSaveXML;
+    private javax.swing.JButton btnUndo;
     private javax.swing.ButtonGroup grpShape;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel2;
@@ -0,0 +1,164 @@
+/*
+ * DrawingCanvas.java
+ *
+ *
+ * An AWT Canvas that shows a DrawingPanel's drawing by active rendering:
+ * a loop on its own thread draws every frame into a BufferStrategy and
+ * shows it, paced to a fixed frame rate by a FramePacer.  The Swing panel
+ * is repainted when the RepaintManager gets round to it, and repaints asked
+ * for while the event dispatch thread is busy with the mouse are merged, so
+ * the time between frames varies with the input.  The canvas loop does not
+ * wait for the event dispatch thread at all.
+ *
+ * The panel still holds the drawing and handles the mouse; the canvas is
+ * given the panel's mouse listeners and only draws.  Each frame copies the
+ * render worker's latest frame and the dots of the shape being drawn, which
+ * is all the loop thread reads from the panel (see
+ * DrawingPanel.paintDrawing()).
+ *
+ * NOT created using the NetBeans GUI builder
+ */
+package simpledrawer;
+
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class DrawingCanvas extends Canvas {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Frame rate used when none is given
+     */
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    private final DrawingPanel panel;
+    private final FramePacer pacer;
+
+    // the thread running the render loop, null when the canvas is not on
+    // the screen
+    private volatile Thread loop;
+
+    /**
+     * @param panel the panel holding the drawing, which is not shown itself
+     * @param framesPerSecond most frames to draw each second, 0 for no cap
+     */
+    public DrawingCanvas(DrawingPanel panel, int framesPerSecond) {
+        this.panel = panel;
+        this.pacer = new FramePacer(framesPerSecond);
+        setIgnoreRepaint(true); // every frame is drawn by the loop
+        setBackground(panel.getBackground());
+        setPreferredSize(new Dimension(panel.getPreferredSize()));
+        for (MouseListener listener : panel.getMouseListeners()) {
+            addMouseListener(listener);
+        }
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                DrawingCanvas.this.panel.drawingChanged();
+            }
+        });
+        panel.showOn(this);
+    }
+
+    /**
+     * @return the times between the frames shown
+     */
+    public FramePacer getFrameTimes() {
+        return pacer;
+    }
+
+    /*
+     * The buffers can only be made once the canvas has a peer, so the loop
+     * starts and stops with it
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(2);
+        Thread thread = new Thread(this::run, "Canvas render loop");
+        thread.setDaemon(true);
+        loop = thread;
+        thread.start();
+        // ask for a frame the size of the canvas
+        EventQueue.invokeLater(panel::drawingChanged);
+    }
+
+    @Override
+    public void removeNotify() {
+        Thread thread = loop;
+        loop = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        super.removeNotify();
+    }
+
+    // nothing to do: the loop draws every frame
+    @Override
+    public void paint(Graphics g) {
+    }
+
+    @Override
+    public void update(Graphics g) {
+    }
+
+    /*
+     * Runs on the loop thread, drawing and showing one frame each period
+     */
+    private void run() {
+        BufferStrategy strategy = getBufferStrategy();
+        pacer.reset();
+        while (loop == Thread.currentThread()) {
+            try {
+                showFrame(strategy);
+            } catch (IllegalStateException ex) {
+                if (loop == Thread.currentThread()) {
+                    Logger.getLogger(DrawingCanvas.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                return; // the canvas has gone from the screen
+            }
+            long now = System.nanoTime();
+            long deadline = now + pacer.frameShown(now);
+            for (long wait = deadline - System.nanoTime(); wait > 0; wait = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void showFrame(BufferStrategy strategy) {
+        int width = getWidth();
+        int height = getHeight();
+        // the buffers can lose their contents, e.g. when the display mode
+        // changes; the frame is drawn again until it is shown whole
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g2d.setColor(panel.getBackground());
+                    g2d.fillRect(0, 0, width, height);
+                    panel.paintDrawing(g2d, width, height);
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        // send the frame to the screen now rather than when X gets round to it
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
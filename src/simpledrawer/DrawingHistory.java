@@ -0,0 +1,391 @@
+/*
+ * DrawingHistory.java
+ *
+ *
+ * The undo history of a DrawingPanel, kept as an append-only log of the
+ * commands that changed the drawing: adding shapes, removing them from the
+ * end, clearing, rotating and changing the brightness.
+ *
+ * The panel never removes shapes from its store while they are in the
+ * history.  Clearing the drawing just moves the start of the visible shapes
+ * up to the end of the store, so the whole state of the drawing at any point
+ * is four numbers: the positions in the store of the first visible shape and
+ * of the end of the visible shapes, the rotation and the brightness.  Each
+ * command is undone or redone by changing those numbers, whatever the size
+ * of the drawing.
+ *
+ * Every CHECKPOINT_INTERVAL commands the state is saved as a checkpoint, so
+ * moving to any point in the history replays at most half that many
+ * commands from the nearest checkpoint, however long the history is.
+ *
+ * Recording a new command after undoing throws away the commands that
+ * could have been redone.
+ *
+ * The history keeps at most a limit of commands, forgetting the oldest
+ * CHECKPOINT_INTERVAL at a time; the checkpoint after them becomes the
+ * state at the start of the history.  The first visible shape only moves
+ * up as commands are applied, so shapes before getOldestFirst() cannot be
+ * seen again however far back the drawing is undone.  The panel drops them
+ * from its store and calls shift() to move the positions down to match, so
+ * the shapes of drawings that were cleared long ago do not use memory for
+ * ever.  reset() starts a history whose oldest state is the whole store.
+ */
+package simpledrawer;
+
+import java.util.Arrays;
+
+public class DrawingHistory {
+
+    /**
+     * The kinds of command in the history
+     */
+    public enum Command {
+        ADD, REMOVE, CLEAR, ROTATE, BRIGHTNESS
+    }
+
+    /**
+     * Number of commands between checkpoints
+     */
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * Number of commands kept by default
+     */
+    public static final int DEFAULT_LIMIT = 16 * CHECKPOINT_INTERVAL;
+
+    private static final Command[] COMMANDS = Command.values();
+
+    // the log, one entry per command
+    private byte[] commands; // Command ordinal
+    private int[] args; // ADD: shapes added, REMOVE: shapes removed, ROTATE: degrees, BRIGHTNESS: new value bits
+    private int[] previous; // CLEAR: first visible shape before, BRIGHTNESS: value bits before
+    private int length; // number of commands in the log
+    private int position; // number of commands applied
+    private final int limit; // most commands kept
+
+    // state after every CHECKPOINT_INTERVAL commands, four ints each:
+    // first, end, rotation and brightness bits
+    private int[] checkpoints;
+
+    // the current state
+    private int first, end, rotation;
+    private float brightness;
+
+    /**
+     * An empty history of an empty drawing
+     *
+     * @param brightness the brightness of the drawing
+     */
+    public DrawingHistory(float brightness) {
+        this(brightness, DEFAULT_LIMIT);
+    }
+
+    /**
+     * An empty history of an empty drawing
+     *
+     * @param brightness the brightness of the drawing
+     * @param limit most commands to keep, at least CHECKPOINT_INTERVAL
+     */
+    public DrawingHistory(float brightness, int limit) {
+        if (limit < CHECKPOINT_INTERVAL) {
+            throw new IllegalArgumentException("The history must keep at least " + CHECKPOINT_INTERVAL + " commands");
+        }
+        this.limit = limit;
+        commands = new byte[64];
+        args = new int[64];
+        previous = new int[64];
+        checkpoints = new int[16];
+        reset(0, 0, brightness);
+    }
+
+    /**
+     * Forget all the commands, starting again with a drawing of the first
+     * shapes in the store
+     *
+     * @param shapes number of shapes in the drawing
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness of the drawing
+     */
+    public void reset(int shapes, int rotation, float brightness) {
+        length = 0;
+        position = 0;
+        first = 0;
+        end = shapes;
+        this.rotation = rotation;
+        this.brightness = brightness;
+        saveCheckpoint();
+    }
+
+    /**
+     * Record that shapes have been added to the end of the drawing
+     *
+     * @param count number of shapes added
+     */
+    public void recordAdd(int count) {
+        record(Command.ADD, count, 0);
+    }
+
+    /**
+     * Record that shapes have been removed from the end of the drawing
+     *
+     * @param count number of shapes removed
+     */
+    public void recordRemove(int count) {
+        record(Command.REMOVE, count, 0);
+    }
+
+    /**
+     * Record that the drawing has been cleared
+     */
+    public void recordClear() {
+        record(Command.CLEAR, 0, first);
+    }
+
+    /**
+     * Record that the drawing has been rotated
+     *
+     * @param amount degrees rotated, negative for left
+     */
+    public void recordRotate(int amount) {
+        record(Command.ROTATE, amount, 0);
+    }
+
+    /**
+     * Record that the brightness has changed.  A change straight after
+     * another one is joined to it, so dragging a slider makes one command.
+     *
+     * @param brightness the new brightness
+     */
+    public void recordBrightness(float brightness) {
+        if (position == length && length > 0 && COMMANDS[commands[length - 1]] == Command.BRIGHTNESS) {
+            args[length - 1] = Float.floatToIntBits(brightness);
+            this.brightness = brightness;
+            if (length % CHECKPOINT_INTERVAL == 0) {
+                saveCheckpoint();
+            }
+            return;
+        }
+        record(Command.BRIGHTNESS, Float.floatToIntBits(brightness), Float.floatToIntBits(this.brightness));
+    }
+
+    private void record(Command command, int arg, int before) {
+        length = position; // throw away anything that could be redone
+        if (length == commands.length) {
+            commands = Arrays.copyOf(commands, length * 2);
+            args = Arrays.copyOf(args, length * 2);
+            previous = Arrays.copyOf(previous, length * 2);
+        }
+        commands[length] = (byte) command.ordinal();
+        args[length] = arg;
+        previous[length] = before;
+        length++;
+        redo();
+        if (length >= limit + CHECKPOINT_INTERVAL) {
+            forgetOldest();
+        }
+    }
+
+    /*
+     * Forget the oldest CHECKPOINT_INTERVAL commands.  The checkpoint saved
+     * after them becomes the first.
+     */
+    private void forgetOldest() {
+        int n = CHECKPOINT_INTERVAL;
+        System.arraycopy(commands, n, commands, 0, length - n);
+        System.arraycopy(args, n, args, 0, length - n);
+        System.arraycopy(previous, n, previous, 0, length - n);
+        System.arraycopy(checkpoints, 4, checkpoints, 0, length / n * 4);
+        length -= n;
+        position -= n;
+    }
+
+    /**
+     * @return position in the store of the first shape that any point in
+     * the history shows; the shapes before it can no longer be seen
+     */
+    public int getOldestFirst() {
+        return checkpoints[0];
+    }
+
+    /**
+     * Move every position in the history down, after the store has dropped
+     * shapes from its start
+     *
+     * @param count number of shapes dropped, at most getOldestFirst()
+     */
+    public void shift(int count) {
+        if (count < 0 || count > getOldestFirst()) {
+            throw new IllegalArgumentException("Cannot shift by " + count + ", the oldest first shape is " + getOldestFirst());
+        }
+        first -= count;
+        end -= count;
+        for (int c = 0; c <= length / CHECKPOINT_INTERVAL; c++) {
+            checkpoints[c * 4] -= count;
+            checkpoints[c * 4 + 1] -= count;
+        }
+        for (int i = 0; i < length; i++) {
+            if (COMMANDS[commands[i]] == Command.CLEAR) {
+                previous[i] -= count;
+            }
+        }
+    }
+
+    /**
+     * @return true if there is a command to undo
+     */
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * @return true if there is a command to redo
+     */
+    public boolean canRedo() {
+        return position < length;
+    }
+
+    /**
+     * Undo the last command applied, if there is one
+     */
+    public void undo() {
+        if (position == 0) {
+            return;
+        }
+        position--;
+        int arg = args[position];
+        switch (COMMANDS[commands[position]]) {
+            case ADD:
+                end -= arg;
+                break;
+            case REMOVE:
+                end += arg;
+                break;
+            case CLEAR:
+                first = previous[position];
+                break;
+            case ROTATE:
+                rotation -= arg;
+                break;
+            case BRIGHTNESS:
+                brightness = Float.intBitsToFloat(previous[position]);
+                break;
+        }
+    }
+
+    /**
+     * Apply the next command again, if there is one
+     */
+    public void redo() {
+        if (position == length) {
+            return;
+        }
+        int arg = args[position];
+        switch (COMMANDS[commands[position]]) {
+            case ADD:
+                end += arg;
+                break;
+            case REMOVE:
+                end -= arg;
+                break;
+            case CLEAR:
+                first = end;
+                break;
+            case ROTATE:
+                rotation += arg;
+                break;
+            case BRIGHTNESS:
+                brightness = Float.intBitsToFloat(arg);
+                break;
+        }
+        position++;
+        if (position % CHECKPOINT_INTERVAL == 0 && position == length) {
+            saveCheckpoint();
+        }
+    }
+
+    /**
+     * Undo or redo commands until the given number of commands are applied,
+     * starting from whichever of the current position and the checkpoints
+     * either side is nearest
+     *
+     * @param target number of commands to leave applied, from 0 to
+     * getLength()
+     */
+    public void goTo(int target) {
+        if (target < 0 || target > length) {
+            throw new IndexOutOfBoundsException("Position: " + target + ", Length: " + length);
+        }
+        int below = target / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+        int above = below + CHECKPOINT_INTERVAL;
+        int distance = Math.abs(target - position);
+        if (target - below < distance) {
+            loadCheckpoint(below);
+            distance = target - below;
+        }
+        if (above <= length && above - target < distance) {
+            loadCheckpoint(above);
+        }
+        while (position < target) {
+            redo();
+        }
+        while (position > target) {
+            undo();
+        }
+    }
+
+    private void saveCheckpoint() {
+        int c = position / CHECKPOINT_INTERVAL * 4;
+        if (c + 4 > checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        checkpoints[c] = first;
+        checkpoints[c + 1] = end;
+        checkpoints[c + 2] = rotation;
+        checkpoints[c + 3] = Float.floatToIntBits(brightness);
+    }
+
+    private void loadCheckpoint(int at) {
+        int c = at / CHECKPOINT_INTERVAL * 4;
+        position = at;
+        first = checkpoints[c];
+        end = checkpoints[c + 1];
+        rotation = checkpoints[c + 2];
+        brightness = Float.intBitsToFloat(checkpoints[c + 3]);
+    }
+
+    /**
+     * @return number of commands applied
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return number of commands in the history, including any undone
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return position in the store of the first shape in the drawing
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * @return position in the store after the last shape in the drawing
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public float getBrightness() {
+        return brightness;
+    }
+}
@@ -12,14 +12,15 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.awt.Stroke;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
-import static simpledrawer.ShapeType.*;
 
 public class DrawingPanel extends JPanel {
 
@@ -35,8 +36,31 @@ public class DrawingPanel extends JPanel {
     // position of the latest click
     private int x, y;
 
-    // A List that stores the shapes that appear on the JPanel
-    private List<Shape> shapes;  // using a raw type - dangerous !!
+    // stores the shapes that appear on the JPanel
+    private ShapeSource shapes;
+
+    // draws the shapes on a background thread; paintComponent() only
+    // copies the last frame it finished to the screen
+    private final RenderWorker renderer;
+
+    // the commands that can be undone.  Shapes stay in the store while
+    // they are in the history; the drawing is the shapes from
+    // history.getFirst() up to history.getEnd().  See dropUnreachable().
+    private final DrawingHistory history;
+
+    // saves every change so the drawing can be recovered after a crash,
+    // null when autosave is off
+    private AutosaveJournal journal;
+
+    // the canvas the drawing is shown on, null when it is shown on the panel
+    private DrawingCanvas canvas;
+
+    // the dots of the shape being drawn as of the last change, read by the
+    // canvas thread
+    private volatile ClickDots dots;
+
+    // times between calls to paintComponent()
+    private final FramePacer paintTimes = new FramePacer(0);
 
     /* Default constructor.  Sets default values for line colour, thickness 
      * and shape type.
@@ -59,8 +83,10 @@ public class DrawingPanel extends JPanel {
         currentRotation = 0;
         currentBrightness = 1;
 
-        // instantiate the ArrayList to store shapes
-        shapes = new ArrayList<>();
+        // instantiate the ShapeStore to store shapes
+        shapes = new ShapeStore();
+        renderer = new RenderWorker(this::repaint);
+        history = new DrawingHistory(currentBrightness);
     }
 
     /*
@@ -73,61 +99,304 @@ public class DrawingPanel extends JPanel {
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
+        paintTimes.frameShown(System.nanoTime());
 
         // Graphics2D needed to set line thickness
         Graphics2D g2d = (Graphics2D) g;
-        
-        Stroke s = g2d.getStroke(); // save stroke to restore later
 
+        // ask for the drawing as it is now and show the last frame drawn.
+        // The new frame is drawn in the background and repaints the panel
+        // when it is ready.
+        if (canvas == null) {
+            renderer.request(shapes.view(), this.getWidth(), this.getHeight(),
+                    currentRotation, currentBrightness);
+        }
+        dots = new ClickDots(currentPoints, currentColor, currentRotation);
+        paintDrawing(g2d, this.getWidth(), this.getHeight());
+    }
+
+    /*
+     * Draw the last frame finished by the render worker and the dots of the
+     * shape being drawn.  Called by paintComponent(), or by a DrawingCanvas
+     * on its own thread, so it only reads the render worker and the dots
+     * saved on the event dispatch thread.
+     */
+    void paintDrawing(Graphics2D g2d, int width, int height) {
+        renderer.paint(g2d);
+
+        ClickDots current = dots;
+        if (current == null || current.points.length == 0) {
+            return;
+        }
         // rotate the drawing by the current rotation amount
         double rotateTheta;
-        rotateTheta = currentRotation * Math.PI / 180;
-        g2d.rotate(rotateTheta, this.getWidth() / 2, this.getHeight() / 2);
-
-        // Loop though the ArrayList drawing
-        // all the shapes stored in it
-        for (Shape aShape : shapes) {
-             //draw the correct sort of shape
-            if (aShape.getShapeType() == LINE) {
-                LineDrawer ld = new LineDrawer((Shape) aShape);
-                ld.drawShape(g2d, currentBrightness);
-            } else {
-                if (aShape.getShapeType() == OVAL) {
-                    OvalDrawer ld = new OvalDrawer((Shape) aShape);
-                    ld.drawShape(g2d, currentBrightness);
-                } else {
-                    if (aShape.getShapeType() == TRIANGLE) {
-                        TriangleDrawer ld = new TriangleDrawer((Shape) aShape);
-                        ld.drawShape(g2d, currentBrightness);
-                    } else {
-                        if (aShape.getShapeType() == QUADRILATERAL){
-                            QuadrilateralDrawer ld = new QuadrilateralDrawer((Shape) aShape);
-                            ld.drawShape(g2d, currentBrightness);
-                        }
-                    }
-                }
-            }
+        rotateTheta = current.rotation * Math.PI / 180;
+        g2d.rotate(rotateTheta, width / 2, height / 2);
+
+        // draw dot where line started
+        g2d.setColor(current.colour);
+        for (int i = 0; i < current.points.length; i += 2) {
+            g2d.fillOval(current.points[i], current.points[i + 1], 3, 3);
+        }
+    }
+
+    /*
+     * Show the drawing on a canvas instead of the panel.  The canvas draws
+     * on its own thread, so frames are asked for here as the drawing changes
+     * rather than when the panel paints.
+     */
+    void showOn(DrawingCanvas canvas) {
+        this.canvas = canvas;
+        drawingChanged();
+    }
+
+    /**
+     * @return the times between the frames shown, by the panel or by the
+     * canvas it is shown on
+     */
+    public FramePacer getFrameTimes() {
+        return canvas == null ? paintTimes : canvas.getFrameTimes();
+    }
+
+    /*
+     * Wait until the render worker has drawn every frame asked for, e.g. so
+     * a benchmark can time a whole frame
+     */
+    boolean awaitFrame(long timeout, TimeUnit unit) throws InterruptedException {
+        return renderer.awaitFrame(timeout, unit);
+    }
+
+    /*
+     * Called on the event dispatch thread after each change to the drawing,
+     * or when the canvas it is shown on changes size
+     */
+    void drawingChanged() {
+        dots = new ClickDots(currentPoints, currentColor, currentRotation);
+        if (canvas != null) {
+            renderer.request(shapes.view(), canvas.getWidth(), canvas.getHeight(),
+                    currentRotation, currentBrightness);
+        }
+        repaint();
+    }
+
+    // the area a shape can draw on
+    private Rectangle paddedBounds(int index) {
+        return RenderWorker.paddedBounds(shapes, index);
+    }
+
+    /*
+     * Record that a shape has been added so only the tiles under it are
+     * redrawn by the render worker
+     */
+    private void shapeAdded(Shape aShape) {
+        shapes.add(aShape);
+        if (journal != null) {
+            journal.shapeAdded(shapes, shapes.size() - 1);
         }
+        renderer.insert(shapes.size() - 1, paddedBounds(shapes.size() - 1));
+    }
 
-        g2d.setStroke(s);  // restore saved stroke
-        
-        if (currentPoints != null) { // draw dot where line started
-            g2d.setColor(currentColor);
-            if (currentPoints.size() >= 1) {
-                g2d.fillOval(currentPoints.get(0).x, currentPoints.get(0).y, 3, 3);
+    /*
+     * Drop the shapes at the start of the store that the history has
+     * forgotten how to bring back, e.g. a drawing cleared more than
+     * DrawingHistory.DEFAULT_LIMIT commands ago.  The rest are moved down,
+     * so it is only done once the shapes dropped are at least half the
+     * store, which makes the copying cost no more than adding them did.
+     */
+    private void dropUnreachable() {
+        int unreachable = history.getOldestFirst();
+        if (unreachable == 0 || unreachable < shapes.size() / 2) {
+            return;
+        }
+        shapes.removeFirst(unreachable);
+        history.shift(unreachable);
+        renderer.insertAll(history.getFirst(), history.getEnd());
+    }
+
+    /*
+     * Throw away shapes that were added and then undone, as the drawing is
+     * about to change so they can no longer be redone
+     */
+    private void discardRedo() {
+        if (shapes.size() > history.getEnd()) {
+            shapes.truncate(history.getEnd());
+        }
+    }
+
+    /**
+     * Undo the last change to the drawing, if there is one
+     */
+    public void undo() {
+        int first = history.getFirst();
+        int end = history.getEnd();
+        history.undo();
+        historyMoved(first, end, currentRotation, currentBrightness);
+    }
+
+    /**
+     * Redo the last change undone, if there is one
+     */
+    public void redo() {
+        int first = history.getFirst();
+        int end = history.getEnd();
+        history.redo();
+        historyMoved(first, end, currentRotation, currentBrightness);
+    }
+
+    /**
+     * @return true if there is a change to undo
+     */
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    /**
+     * @return true if there is a change to redo
+     */
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    /*
+     * Bring the display up to date after moving through the history.  Only
+     * the shapes added or removed at the end are changed in the index,
+     * unless the drawing was cleared or uncleared.
+     */
+    private void historyMoved(int oldFirst, int oldEnd, int oldRotation, float oldBrightness) {
+        int first = history.getFirst();
+        int end = history.getEnd();
+        currentRotation = history.getRotation();
+        currentBrightness = history.getBrightness();
+        if (first != oldFirst) {
+            renderer.insertAll(first, end);
+        } else {
+            for (int i = oldEnd; i < end; i++) {
+                renderer.insert(i, paddedBounds(i));
             }
-            if (currentPoints.size() >= 2) {
-                g2d.fillOval(currentPoints.get(1).x, currentPoints.get(1).y, 3, 3);
+            for (int i = oldEnd - 1; i >= end; i--) {
+                renderer.remove(i, paddedBounds(i));
             }
-            if (currentPoints.size() >= 3) {
-                g2d.fillOval(currentPoints.get(2).x, currentPoints.get(2).y, 3, 3);
+        }
+        journalMoved(oldFirst, oldEnd, oldRotation, oldBrightness);
+        drawingChanged();
+    }
+
+    /*
+     * Save what moving through the history did to the drawing.  The journal
+     * holds the changes rather than the undo or redo, as after a snapshot
+     * the history they refer to is not in the journal.
+     */
+    private void journalMoved(int oldFirst, int oldEnd, int oldRotation, float oldBrightness) {
+        if (journal == null) {
+            return;
+        }
+        int first = history.getFirst();
+        int end = history.getEnd();
+        if (first != oldFirst) {
+            journal.cleared();
+            for (int i = first; i < end; i++) {
+                journal.shapeAdded(shapes, i);
             }
-            if (currentPoints.size() >= 4) {
-                g2d.fillOval(currentPoints.get(3).x, currentPoints.get(3).y, 3, 3);
+        } else if (end > oldEnd) {
+            for (int i = oldEnd; i < end; i++) {
+                journal.shapeAdded(shapes, i);
             }
+        } else if (end < oldEnd) {
+            journal.removed(oldEnd - end);
+        }
+        if (currentRotation != oldRotation) {
+            journal.rotated(currentRotation - oldRotation);
+        }
+        if (currentBrightness != oldBrightness) {
+            journal.brightnessChanged(currentBrightness);
+        }
+        journalled();
+    }
+
+    /*
+     * Called after each change is saved in the journal.  Once the journal
+     * is big enough the drawing is saved as a snapshot in the background and
+     * a new journal started.
+     */
+    private void journalled() {
+        if (journal != null && journal.needsCompaction()) {
+            journal.compact(snapshot(), currentRotation, currentBrightness);
         }
     }
 
+    /*
+     * The drawing as it is now, for the autosave snapshot thread to read
+     * while it carries on changing.  Views of the store are never changed,
+     * so nothing needs copying.
+     */
+    private ShapeSource snapshot() {
+        return getShapes().view();
+    }
+
+    /*
+     * Take shapes off the end of the drawing, used when recovering
+     */
+    private void removeShapes(int count) {
+        discardRedo();
+        int first = history.getFirst();
+        int end = history.getEnd();
+        history.recordRemove(count);
+        historyMoved(first, end, currentRotation, currentBrightness);
+    }
+
+    /**
+     * Recover the drawing saved by the last run from an autosave journal,
+     * if there is one, then save every change to the drawing in the journal
+     *
+     * @param journal the journal, not yet started
+     * @throws IOException - problem reading or starting the journal
+     */
+    public void recover(AutosaveJournal journal) throws IOException {
+        this.journal = null; // the changes being replayed are already saved
+        journal.replay(new AutosaveJournal.Replayer() {
+            @Override
+            public void reset(ShapeSource shapes, int rotation, float brightness) {
+                currentRotation = rotation;
+                currentBrightness = brightness;
+                setShapes(shapes);
+            }
+
+            @Override
+            public void add(ShapeType st, int argb, int thickness, int[] x, int[] y, int count) {
+                List<Point> points = new ArrayList<>(count);
+                for (int v = 0; v < count; v++) {
+                    points.add(new Point(x[v], y[v]));
+                }
+                addShape(new ShapeFactory().getShape(points, new Color(argb, true), thickness, st));
+            }
+
+            @Override
+            public void clear() {
+                clearDisplay();
+            }
+
+            @Override
+            public void remove(int count) {
+                removeShapes(count);
+            }
+
+            @Override
+            public void rotate(int amount) {
+                DrawingPanel.this.rotate(amount);
+            }
+
+            @Override
+            public void brightness(float brightness) {
+                discardRedo();
+                currentBrightness = brightness;
+                history.recordBrightness(brightness);
+            }
+        });
+        journal.start(snapshot(), currentRotation, currentBrightness);
+        this.journal = journal;
+        drawingChanged();
+    }
+
     /**
      * @return the currentShapeType
      */
@@ -156,8 +425,14 @@ public class DrawingPanel extends JPanel {
      * 0.75 achieves.
      */
     public void setCurrentBrightness(float currentBrightness) {
+        discardRedo();
         this.currentBrightness = (currentBrightness / 2) + 0.75F;
-        repaint();
+        history.recordBrightness(this.currentBrightness);
+        if (journal != null) {
+            journal.brightnessChanged(this.currentBrightness);
+            journalled();
+        }
+        drawingChanged();
     }
 
     /* MouseWatcher is an inner class used to handle the
@@ -167,7 +442,14 @@ public class DrawingPanel extends JPanel {
 
         public void mousePressed(MouseEvent e) {
             // reset the rotation to 0 otherwise things get messy.
-            currentRotation = 0;
+            if (currentRotation != 0) {
+                discardRedo();
+                history.recordRotate(-currentRotation);
+                if (journal != null) {
+                    journal.rotated(-currentRotation);
+                }
+                currentRotation = 0;
+            }
 
             if (currentPoints == null) { // must be starting a new shape
                 currentPoints = new ArrayList<>();
@@ -186,34 +468,45 @@ public class DrawingPanel extends JPanel {
                 switch (currentShapeType) { 
                     case LINE: // Draw the line 
                         Shape Line = shapeFactory.getShape(currentPoints, currentColor, currentThickness, ShapeType.LINE);
-                        shapes.add(Line);
+                        addShape(Line);
                         currentPoints = null;
                         break;
                     case OVAL: // Draw the oval
                         Shape Oval = shapeFactory.getShape(currentPoints, currentColor, currentThickness, ShapeType.OVAL);
-                        shapes.add(Oval);
+                        addShape(Oval);
                         currentPoints = null;
                         break;
                     case TRIANGLE: // May or may not have finished the triangle
                         if (currentPoints.size() == 3) { // 3 points so must be complete triangle
                             Shape Triangle = shapeFactory.getShape(currentPoints, currentColor, currentThickness, ShapeType.TRIANGLE);
-                            shapes.add(Triangle);
+                            addShape(Triangle);
                             currentPoints = null;
                             break;
                         }
                     case QUADRILATERAL:
                         if (currentPoints.size() == 4) { // 4 points so must be complete quadrilateral
                             Shape Quadrilateral = shapeFactory.getShape(currentPoints, currentColor, currentThickness, ShapeType.QUADRILATERAL);
-                            shapes.add(Quadrilateral);
+                            addShape(Quadrilateral);
                             currentPoints = null;
                             break;
                         }
                 }
             }
-            repaint(); // causes paintComponent() to be called
+            drawingChanged(); // causes paintComponent() to be called
         }
     }
 
+    /*
+     * Add a shape drawn by the user
+     */
+    private void addShape(Shape aShape) {
+        discardRedo();
+        shapeAdded(aShape);
+        history.recordAdd(1);
+        dropUnreachable();
+        journalled();
+    }
+
     public void setCurrentThickness(int currentThickness) {
         this.currentThickness = currentThickness;
     }
@@ -223,9 +516,17 @@ public class DrawingPanel extends JPanel {
     }
 
     public void clearDisplay() {
-        // Empty the ArrayList and clear the display.
-        shapes.clear();
-        repaint();
+        // Clear the display.  The shapes stay in the ShapeStore so the
+        // clear can be undone.
+        discardRedo();
+        history.recordClear();
+        renderer.clear();
+        dropUnreachable();
+        if (journal != null) {
+            journal.cleared();
+            journalled();
+        }
+        drawingChanged();
     }
 
     /* The whole drawing area can be rotated left or right.
@@ -234,11 +535,94 @@ public class DrawingPanel extends JPanel {
      * the right
      */
     public void rotate(int amount) {
+        discardRedo();
         currentRotation += amount;
-        repaint();
+        history.recordRotate(amount);
+        if (journal != null) {
+            journal.rotated(amount);
+            journalled();
+        }
+        drawingChanged();
+    }
+
+    /* Replace the drawing with a list of shapes.  The shapes are copied
+     * into a ShapeStore so later changes to the list are not seen.
+     */
+    public void setShapes(List<? extends Shape> shapes) {
+        ShapeStore store = new ShapeStore(shapes.size());
+        store.addAll(shapes);
+        setShapes(store);
+    }
+
+    /* Add a batch of shapes to the end of the drawing, e.g. as they are
+     * loaded from a file.  Only the tiles under the new shapes are redrawn.
+     */
+    public void addShapes(List<? extends Shape> newShapes) {
+        discardRedo();
+        for (Shape aShape : newShapes) {
+            shapeAdded(aShape);
+        }
+        history.recordAdd(newShapes.size());
+        dropUnreachable();
+        journalled();
+        drawingChanged();
+    }
+
+    /* Replace the drawing with shapes held in a ShapeStore or a
+     * MappedShapeStore.  The shapes are used where they are, not copied.
+     * Only a ShapeStore is changed by drawing; shapes drawn on anything else
+     * go in a ShapeOverlay on top, so a read-only file can be drawn on.
+     * The new drawing starts with no history to undo, and in a new
+     * generation of the autosave journal, whose snapshot reads the shapes on
+     * its own thread.  The index is built by the render worker, so nothing
+     * here reads every shape.
+     */
+    public void setShapes(ShapeSource shapes) {
+        this.shapes = shapes instanceof ShapeStore ? shapes : new ShapeOverlay(shapes);
+        history.reset(shapes.size(), currentRotation, currentBrightness);
+        if (journal != null) {
+            journal.replace(snapshot(), currentRotation, currentBrightness);
+        }
+        renderer.insertAll(0, this.shapes.size());
+        drawingChanged();
+    }
+
+    /**
+     * @return the shapes in the drawing
+     */
+    public ShapeSource getShapes() {
+        if (history.getFirst() == 0 && history.getEnd() == shapes.size()) {
+            return shapes;
+        }
+        return new ShapeRange(shapes, history.getFirst(), history.getEnd());
+    }
+
+    /*
+     * Number of shapes kept, including ones that are cleared or undone
+     */
+    int getStoreSize() {
+        return shapes.size();
     }
 
-    public void setShapes(List shapes) {
-        this.shapes = shapes;
+    /*
+     * The points clicked so far for the shape being drawn, with the colour
+     * and rotation they are drawn with
+     */
+    private static final class ClickDots {
+
+        final int[] points; // x and y of each point
+        final Color colour;
+        final int rotation;
+
+        ClickDots(List<Point> clicked, Color colour, int rotation) {
+            int count = clicked == null ? 0 : clicked.size();
+            points = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                points[i * 2] = clicked.get(i).x;
+                points[i * 2 + 1] = clicked.get(i).y;
+            }
+            this.colour = colour;
+            this.rotation = rotation;
+        }
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * FramePacer.java
+ *
+ *
+ * Decides when the next frame should start so frames are shown at a steady
+ * rate, and keeps the times between frames so the steadiness can be
+ * measured.  Frames are due at fixed times one period apart, counted from
+ * the first frame, rather than one period after the last frame finished, so
+ * the time taken to draw a frame does not add to the wait and small delays
+ * do not build up.  A frame that runs late does not make the next ones
+ * hurry to catch up: the missed times are skipped and the next frame is due
+ * straight away.  Nothing here waits for the screen's vertical refresh,
+ * which Java2D cannot be asked for on every pipeline.
+ *
+ * A pacer with no frame rate never waits and only keeps the times, e.g. for
+ * measuring how often a panel is repainted.
+ */
+package simpledrawer;
+
+import java.util.concurrent.TimeUnit;
+
+public class FramePacer {
+
+    private final long period; // nanoseconds between frames, 0 for no cap
+
+    // guarded by this
+    private long next; // when the next frame is due
+    private long last; // when the last frame was shown
+    private boolean started;
+    private int frames; // times between frames recorded
+    private double total; // of the times in nanoseconds
+    private double totalSquares; // of the times squared, for the deviation
+    private long longest;
+
+    /**
+     * @param framesPerSecond most frames to show each second, 0 for no cap
+     */
+    public FramePacer(int framesPerSecond) {
+        if (framesPerSecond < 0) {
+            throw new IllegalArgumentException("frame rate " + framesPerSecond);
+        }
+        period = framesPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+    }
+
+    /**
+     * Record that a frame has been shown
+     *
+     * @param now the time it was shown, from System.nanoTime()
+     * @return nanoseconds to wait before starting the next frame
+     */
+    public synchronized long frameShown(long now) {
+        if (!started) {
+            started = true;
+            next = now;
+        } else {
+            long time = now - last;
+            frames++;
+            total += time;
+            totalSquares += (double) time * time;
+            longest = Math.max(longest, time);
+        }
+        last = now;
+        if (period == 0) {
+            return 0;
+        }
+        next += period;
+        if (next - now < 0) {
+            next = now; // running late: skip the frames that were missed
+        }
+        return next - now;
+    }
+
+    /**
+     * Forget the times recorded so far and start pacing again from the next
+     * frame
+     */
+    public synchronized void reset() {
+        started = false;
+        frames = 0;
+        total = 0;
+        totalSquares = 0;
+        longest = 0;
+    }
+
+    /**
+     * @return the number of times between frames recorded
+     */
+    public synchronized int getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return the average time between frames in milliseconds
+     */
+    public synchronized double getMeanMillis() {
+        return frames == 0 ? 0 : total / frames / 1e6;
+    }
+
+    /**
+     * @return the standard deviation of the time between frames in
+     * milliseconds; the lower it is the steadier the frames
+     */
+    public synchronized double getDeviationMillis() {
+        if (frames == 0) {
+            return 0;
+        }
+        double mean = total / frames;
+        return Math.sqrt(Math.max(0, totalSquares / frames - mean * mean)) / 1e6;
+    }
+
+    /**
+     * @return the longest time between frames in milliseconds
+     */
+    public synchronized double getLongestMillis() {
+        return longest / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d frames, mean %.2fms, deviation %.2fms, longest %.2fms",
+                frames, getMeanMillis(), getDeviationMillis(), getLongestMillis());
+    }
+}
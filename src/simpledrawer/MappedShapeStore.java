@@ -0,0 +1,325 @@
+/*
+ * MappedShapeStore.java
+ *
+ *
+ * Holds the shapes of a drawing in a memory-mapped file instead of on the
+ * heap, so a drawing can be bigger than the JVM heap.  Opening a file only
+ * maps it; the operating system reads pages in as the shapes on them are
+ * drawn.
+ *
+ * The file is a 32 byte header followed by one fixed size record per shape:
+ *
+ *   header:  int magic, int version, int record size, int reserved,
+ *            long shape count, long reserved
+ *   record:  byte type, byte vertex count, short thickness, int ARGB colour,
+ *            then four x,y int pairs (unused vertices are 0)
+ *
+ * A mapped buffer can be at most 2GB so the records are mapped in chunks.
+ * All numbers are big-endian.
+ *
+ * A view() can be read by another thread while shapes are added: growing
+ * the store maps a new chunk into a new array of chunks, published through
+ * a volatile field, so a reader never sees the array half filled in.
+ */
+package simpledrawer;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+public class MappedShapeStore implements ShapeSource, Closeable {
+
+    /**
+     * Marks a file as a mapped shape store ("SPMS")
+     */
+    public static final int MAGIC = 0x53504d53;
+
+    /**
+     * Version of the file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Size of the file header in bytes
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of one shape record in bytes
+     */
+    public static final int RECORD_SIZE = 40;
+
+    /**
+     * Most vertices a record can hold (a quadrilateral has four)
+     */
+    public static final int MAX_VERTICES = 4;
+
+    // records per mapped chunk, about 64MB each
+    private static final int CHUNK_RECORDS = (64 << 20) / RECORD_SIZE;
+    private static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD_SIZE;
+
+    // offsets of the fields within a record
+    private static final int TYPE = 0, VERTEX_COUNT = 1, THICKNESS = 2, COLOUR = 4, VERTICES = 8;
+
+    // offset of the shape count within the header
+    private static final int COUNT = 16;
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private int size;
+
+    private MappedShapeStore(FileChannel channel, boolean writable, boolean create) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        if (create) {
+            channel.truncate(0);
+        }
+        header = channel.map(mode, 0, HEADER_SIZE);
+        if (create) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, RECORD_SIZE);
+            header.putLong(COUNT, 0);
+        } else {
+            if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Not a mapped shape store");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported mapped shape store version " + header.getInt(4));
+            }
+            long count = header.getLong(COUNT);
+            if (count > Integer.MAX_VALUE
+                    || HEADER_SIZE + count * RECORD_SIZE > channel.size()) {
+                throw new IOException("Mapped shape store is truncated or corrupt");
+            }
+            size = (int) count;
+            // map what is there now, further chunks are mapped as the store grows
+            while ((long) chunks.length * CHUNK_RECORDS < size) {
+                mapChunk(mode);
+            }
+        }
+    }
+
+    /**
+     * Open an existing store
+     *
+     * @param file the file holding the store
+     * @param writable true to allow shapes to be added
+     * @return the opened store
+     * @throws IOException - problem opening or mapping the file
+     */
+    public static MappedShapeStore open(Path file, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedShapeStore(channel, writable, false);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Create a new empty store, replacing any existing file
+     *
+     * @param file the file to hold the store
+     * @return the new store, open for writing
+     * @throws IOException - problem creating or mapping the file
+     */
+    public static MappedShapeStore create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new MappedShapeStore(channel, true, true);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Shape aShape) {
+        List<Point> vertices = aShape.getVertices();
+        int count = vertices.size();
+        int[] x = new int[count];
+        int[] y = new int[count];
+        for (int v = 0; v < count; v++) {
+            x[v] = vertices.get(v).x;
+            y[v] = vertices.get(v).y;
+        }
+        add(aShape.getShapeType(), aShape.getColour().getRGB(), aShape.getThickness(), x, y, count);
+    }
+
+    /**
+     * Add a shape to the end of the store
+     *
+     * @param st the type of shape
+     * @param colour colour as an ARGB value (see Color.getRGB())
+     * @param t thickness of the line
+     * @param x x coordinates of the vertices
+     * @param y y coordinates of the vertices
+     * @param count number of vertices, at most MAX_VERTICES
+     */
+    public void add(ShapeType st, int colour, int t, int[] x, int[] y, int count) {
+        if (!writable) {
+            throw new UnsupportedOperationException("Mapped shape store is read only");
+        }
+        if (count > MAX_VERTICES) {
+            throw new IllegalArgumentException("A shape record holds at most " + MAX_VERTICES + " vertices");
+        }
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Mapped shape store is full");
+        }
+        if (size / CHUNK_RECORDS >= chunks.length) {
+            try {
+                mapChunk(FileChannel.MapMode.READ_WRITE);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not grow mapped shape store", ex);
+            }
+        }
+        MappedByteBuffer chunk = chunks[size / CHUNK_RECORDS];
+        int r = (size % CHUNK_RECORDS) * RECORD_SIZE;
+        chunk.put(r + TYPE, (byte) st.ordinal());
+        chunk.put(r + VERTEX_COUNT, (byte) count);
+        chunk.putShort(r + THICKNESS, (short) Math.min(t, Short.MAX_VALUE));
+        chunk.putInt(r + COLOUR, colour);
+        for (int v = 0; v < MAX_VERTICES; v++) {
+            chunk.putInt(r + VERTICES + v * 8, v < count ? x[v] : 0);
+            chunk.putInt(r + VERTICES + v * 8 + 4, v < count ? y[v] : 0);
+        }
+        size++;
+        header.putLong(COUNT, size);
+    }
+
+    /**
+     * Remove all the shapes. The file keeps its size until it is closed.
+     */
+    @Override
+    public void clear() {
+        if (!writable) {
+            throw new UnsupportedOperationException("Mapped shape store is read only");
+        }
+        size = 0;
+        header.putLong(COUNT, 0);
+    }
+
+    @Override
+    public void truncate(int size) {
+        if (!writable) {
+            throw new UnsupportedOperationException("Mapped shape store is read only");
+        }
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", Current size: " + this.size);
+        }
+        this.size = size;
+        header.putLong(COUNT, size);
+    }
+
+    @Override
+    public ShapeType getShapeType(int index) {
+        return TYPES[chunk(index).get(record(index) + TYPE)];
+    }
+
+    @Override
+    public int getArgb(int index) {
+        return chunk(index).getInt(record(index) + COLOUR);
+    }
+
+    @Override
+    public int getThickness(int index) {
+        return chunk(index).getShort(record(index) + THICKNESS);
+    }
+
+    @Override
+    public int getVertexCount(int index) {
+        return chunk(index).get(record(index) + VERTEX_COUNT);
+    }
+
+    @Override
+    public int getX(int index, int vertex) {
+        return chunk(index).getInt(record(index) + VERTICES + vertex * 8);
+    }
+
+    @Override
+    public int getY(int index, int vertex) {
+        return chunk(index).getInt(record(index) + VERTICES + vertex * 8 + 4);
+    }
+
+    /**
+     * Copy every shape from another drawing into this store
+     *
+     * @param shapes the shapes to copy
+     */
+    public void addAll(ShapeSource shapes) {
+        int[] x = new int[MAX_VERTICES];
+        int[] y = new int[MAX_VERTICES];
+        for (int i = 0; i < shapes.size(); i++) {
+            int count = shapes.getVertexCount(i);
+            for (int v = 0; v < count; v++) {
+                x[v] = shapes.getX(i, v);
+                y[v] = shapes.getY(i, v);
+            }
+            add(shapes.getShapeType(i), shapes.getArgb(i), shapes.getThickness(i), x, y, count);
+        }
+    }
+
+    /**
+     * Write any changes to the file and close it. A writable store's file is
+     * trimmed to the shapes it holds.
+     *
+     * @throws IOException - problem writing the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (writable) {
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+            channel.truncate(HEADER_SIZE + (long) size * RECORD_SIZE);
+        }
+        channel.close();
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        return chunks[index / CHUNK_RECORDS];
+    }
+
+    private static int record(int index) {
+        return (index % CHUNK_RECORDS) * RECORD_SIZE;
+    }
+
+    /*
+     * Map the next chunk of records. A read only store only maps as much of
+     * the last chunk as the file holds; a writable one maps (and so grows
+     * the file to) a whole chunk.
+     */
+    private void mapChunk(FileChannel.MapMode mode) throws IOException {
+        MappedByteBuffer[] mapped = chunks;
+        long start = HEADER_SIZE + mapped.length * CHUNK_BYTES;
+        long length = CHUNK_BYTES;
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            length = Math.min(length, channel.size() - start);
+        }
+        mapped = Arrays.copyOf(mapped, mapped.length + 1);
+        mapped[mapped.length - 1] = channel.map(mode, start, length);
+        chunks = mapped;
+    }
+}
@@ -8,16 +8,36 @@
  */
 package simpledrawer;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.geom.Path2D;
 import java.util.List;
 
 public class OvalDrawer implements drawInterface, scaleColour {
 
     private Shape oval; // the oval to be drawn
 
+    // control points of the curves making up an ellipse in a unit square,
+    // as used by java.awt.geom.Ellipse2D
+    private static final double CTRL = 0.5522847498307933;
+    private static final double PCV = 0.5 + CTRL * 0.5;
+    private static final double NCV = 0.5 - CTRL * 0.5;
+    private static final double[][] CURVES = {
+        {1.0, PCV, PCV, 1.0, 0.5, 1.0},
+        {NCV, 1.0, 0.0, PCV, 0.0, 0.5},
+        {0.0, NCV, NCV, 0.0, 0.5, 0.0},
+        {PCV, 0.0, 1.0, NCV, 1.0, 0.5}
+    };
+
+    /* Creates a drawer that isn't tied to one shape.  Use
+     * drawShape(Graphics2D, Shape, float) to draw with it; there is one
+     * of these per ShapeType (see ShapeType.getDrawer()).
+     */
+    public OvalDrawer() {
+        this(null);
+    }
+
     public OvalDrawer(Shape oval) {
         this.oval = oval;
     }
@@ -30,38 +50,18 @@ public class OvalDrawer implements drawInterface, scaleColour {
      */
     
 
-    /* The colour can be made brighter or darker.
-     * currentBrightness is a number between 0.75 and 1.25
-     * which is used to scale the brightness.  Each of the colours
-     * (red, green and blue) have their values mutiplied by
-     * currentBrightness.  If currentBrightness is < 1 the colours
-     * will get darker.  If it is > 1 they will get brighter.
-     * We have to be careful the values don't go over 255 as
-     * that's the maximum allowed.
-     */
     @Override
-    public Color scaleColour(Color c, float currentBrightness) {
-        // get the red amount and scale by currentBrightness
-        int red = (int) (c.getRed() * currentBrightness);
-        // check we've not gone over 255
-        red = red > 255 ? 255 : red;
-        // do the same for green and blue
-        int green = (int) (c.getGreen() * currentBrightness);
-        green = green > 255 ? 255 : green;
-        int blue = (int) (c.getBlue() * currentBrightness);
-        blue = blue > 255 ? 255 : blue;
-        Color scaledColour = new Color(red, green, blue);
-
-        return scaledColour;
+    public void drawShape(Graphics2D g2d, float currentBrightness) {
+        drawShape(g2d, oval, currentBrightness);
     }
 
     @Override
-    public void drawShape(Graphics2D g2d, float currentBrightness) {
+    public void drawShape(Graphics2D g2d, Shape oval, float currentBrightness) {
         //throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-        Color c = scaleColour(oval.getColour(), currentBrightness);
+        Color c = ColourCache.getScaledColour(oval.getColour(), currentBrightness, this);
         g2d.setColor(c);
         // set the thickness of the line
-        g2d.setStroke(new BasicStroke(oval.getThickness()));
+        g2d.setStroke(StrokeCache.getStroke(oval.getThickness()));
 
         // draw the oval        
         g2d.drawOval(oval.getVertices().get(0).x, 
@@ -70,6 +70,25 @@ public class OvalDrawer implements drawInterface, scaleColour {
                      oval.getVertices().get(1).y);
 
     }
-    
-    }
 
+    /* drawOval() strokes an Ellipse2D so the oval is added as the same four
+     * Bezier curves an Ellipse2D is made of, without creating one.
+     */
+    @Override
+    public void appendShape(Path2D path, ShapeSource store, int index) {
+        float x = store.getX(index, 0);
+        float y = store.getY(index, 0);
+        float w = store.getX(index, 1);
+        float h = store.getY(index, 1);
+        if (w < 0 || h < 0) {
+            return; // drawOval() draws nothing for a negative size
+        }
+        path.moveTo(x + w, (float) (y + h * 0.5));
+        for (double[] ctrl : CURVES) {
+            path.curveTo((float) (x + ctrl[0] * w), (float) (y + ctrl[1] * h),
+                         (float) (x + ctrl[2] * w), (float) (y + ctrl[3] * h),
+                         (float) (x + ctrl[4] * w), (float) (y + ctrl[5] * h));
+        }
+        path.closePath();
+    }
+}
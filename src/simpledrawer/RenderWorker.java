@@ -0,0 +1,395 @@
+/*
+ * RenderWorker.java
+ *
+ *
+ * Draws the drawing on a background thread so the event dispatch thread
+ * never waits for shapes to be drawn.  The worker owns the shape index and
+ * the tile cache: the panel sends it the shapes added and removed, in order,
+ * and asks for a frame of a given size, rotation and brightness each time it
+ * paints.  The worker brings its index up to date, draws the frame into an
+ * off-screen image and swaps it in as the latest frame.  paintComponent()
+ * only copies the latest finished frame to the screen, which takes the same
+ * time however many shapes there are, so the panel keeps responding to the
+ * mouse while a big drawing is drawn.
+ *
+ * Two frame images are kept and used in turn.  The worker draws into the one
+ * that is not on show, then swaps them with an AtomicReference.  Each frame
+ * has a lock that the worker holds while drawing into it and the event
+ * dispatch thread tries for while copying it, so a frame is never shown half
+ * drawn: if the lock is taken the frame being copied has just been replaced,
+ * and the newer one is copied instead.
+ *
+ * The tiles are drawn at normal brightness and the brightness is applied to
+ * the finished frame by BrightnessFilter, so dragging the brightness
+ * scrollbar copies the cached tiles and makes one pass over the frame
+ * instead of drawing every shape again.
+ *
+ * Frames are BufferedImages rather than VolatileImages.  A VolatileImage can
+ * lose its contents at any time and has to be redrawn on the thread that
+ * finds out, which would put the drawing back on the event dispatch thread.
+ */
+package simpledrawer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class RenderWorker {
+
+    // changes to the index, six ints each: the op, the shape's position and
+    // the x, y, width and height of its bounds.  INSERT_ALL has the first
+    // and end positions of the shapes instead.
+    private static final int INSERT = 0, REMOVE = 1, CLEAR = 2, INSERT_ALL = 3, OP_SIZE = 6;
+
+    private final Runnable frameReady;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private int[] ops = new int[OP_SIZE * 64];
+    private int opCount; // ints used in ops
+    private int requestedOps; // ints of ops covered by the requested frame
+    private ShapeSource requestShapes;
+    private int requestWidth, requestHeight, requestRotation; // of the last frame asked for
+    private float requestBrightness;
+    private boolean requested; // a frame has been asked for and not yet started
+    private boolean drawing; // the worker is drawing a frame
+    private Thread worker;
+
+    // only used by the worker thread
+    private final ShapeGrid shapeIndex;
+    private final ShapeBatcher batcher;
+    private final TileCache tileCache;
+    private ShapeSource shapes;
+    private Frame spare;
+
+    // the last frame finished
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+
+    /**
+     * @param frameReady called on the worker thread each time a frame is
+     * finished, e.g. the panel's repaint()
+     */
+    public RenderWorker(Runnable frameReady) {
+        this.frameReady = frameReady;
+        shapeIndex = new ShapeGrid();
+        batcher = new ShapeBatcher();
+        tileCache = new TileCache(new TileCache.ScenePainter() {
+            @Override
+            public void paintScene(Graphics2D g2d, Rectangle sceneArea, float brightness) {
+                drawShapes(g2d, sceneArea, brightness);
+            }
+        });
+    }
+
+    /**
+     * Add a shape to the drawing.  Shapes must be inserted in ascending order
+     * of position, as for ShapeGrid.
+     *
+     * @param index position of the shape in the store
+     * @param bounds area the shape can draw on
+     */
+    public void insert(int index, Rectangle bounds) {
+        addOp(INSERT, index, bounds);
+    }
+
+    /**
+     * Replace the drawing with a run of shapes.  Their bounds are worked out
+     * by the worker, so a whole new drawing of millions of shapes costs the
+     * caller nothing.
+     *
+     * @param first position of the first shape in the store
+     * @param end position after the last shape
+     */
+    public void insertAll(int first, int end) {
+        synchronized (lock) {
+            clear();
+            addOp(INSERT_ALL, first, end, 0, 0, 0);
+        }
+    }
+
+    /**
+     * The area a shape can draw on.  Lines use square end caps so they can
+     * stick out by up to the full thickness at a corner.
+     *
+     * @param shapes the shapes in the store
+     * @param index position of the shape
+     * @return the bounds to insert the shape with
+     */
+    public static Rectangle paddedBounds(ShapeSource shapes, int index) {
+        Rectangle bounds = shapes.getBounds(index);
+        int pad = shapes.getThickness(index) + 2;
+        bounds.grow(pad, pad);
+        return bounds;
+    }
+
+    /**
+     * Take a shape off the drawing, in the reverse order they were inserted
+     *
+     * @param index position of the shape in the store
+     * @param bounds the area given when the shape was inserted
+     */
+    public void remove(int index, Rectangle bounds) {
+        addOp(REMOVE, index, bounds);
+    }
+
+    /**
+     * Take all the shapes off the drawing
+     */
+    public void clear() {
+        synchronized (lock) {
+            // the changes before a clear no longer matter
+            opCount = 0;
+            requestedOps = 0;
+            addOp(CLEAR, 0, null);
+        }
+    }
+
+    private void addOp(int op, int index, Rectangle bounds) {
+        if (bounds == null) {
+            addOp(op, index, 0, 0, 0, 0);
+        } else {
+            addOp(op, index, bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+    }
+
+    private void addOp(int op, int index, int a, int b, int c, int d) {
+        synchronized (lock) {
+            if (opCount + OP_SIZE > ops.length) {
+                ops = Arrays.copyOf(ops, ops.length * 2);
+            }
+            ops[opCount] = op;
+            ops[opCount + 1] = index;
+            ops[opCount + 2] = a;
+            ops[opCount + 3] = b;
+            ops[opCount + 4] = c;
+            ops[opCount + 5] = d;
+            opCount += OP_SIZE;
+        }
+    }
+
+    /**
+     * Ask for a frame of the drawing.  Returns straight away; frameReady is
+     * called once the frame is finished.  Asking again before then replaces
+     * the request.  Nothing is drawn if nothing has changed since the last
+     * frame.
+     *
+     * @param shapes the shapes in the store, which must be a view (see
+     * ShapeSource.view()) holding every shape inserted so far
+     * @param width width of the panel
+     * @param height height of the panel
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness the shapes are drawn with
+     */
+    public void request(ShapeSource shapes, int width, int height, int rotation, float brightness) {
+        synchronized (lock) {
+            if (worker != null && opCount == requestedOps && requestWidth == width && requestHeight == height
+                    && requestRotation == rotation && requestBrightness == brightness) {
+                return; // nothing new to draw
+            }
+            requestShapes = shapes;
+            requestWidth = width;
+            requestHeight = height;
+            requestRotation = rotation;
+            requestBrightness = brightness;
+            requestedOps = opCount;
+            requested = true;
+            if (worker == null) {
+                worker = new Thread(this::run, "Render worker");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Copy the latest finished frame onto the screen
+     *
+     * @param g the graphics object to draw on
+     * @return false if no frame has been finished yet
+     */
+    public boolean paint(Graphics g) {
+        while (true) {
+            Frame frame = latest.get();
+            if (frame == null) {
+                return false;
+            }
+            if (frame.lock.tryLock()) {
+                try {
+                    g.drawImage(frame.image, 0, 0, null);
+                    return true;
+                } finally {
+                    frame.lock.unlock();
+                }
+            }
+            // the worker is drawing into it so a newer frame has been swapped in
+        }
+    }
+
+    /**
+     * Wait until every frame asked for has been drawn
+     *
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return true if the worker finished in time
+     * @throws InterruptedException - interrupted while waiting
+     */
+    public boolean awaitFrame(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (requested || drawing) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, left);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Runs on the worker thread, drawing each frame asked for
+     */
+    private void run() {
+        int[] work = new int[0];
+        while (true) {
+            int count;
+            int width, height, rotation;
+            float brightness;
+            synchronized (lock) {
+                while (!requested) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                // take the ops the request covers, leaving any sent since
+                count = requestedOps;
+                if (work.length < count) {
+                    work = new int[ops.length];
+                }
+                System.arraycopy(ops, 0, work, 0, count);
+                System.arraycopy(ops, count, ops, 0, opCount - count);
+                opCount -= count;
+                requestedOps = 0;
+                shapes = requestShapes;
+                requestShapes = null;
+                width = requestWidth;
+                height = requestHeight;
+                rotation = requestRotation;
+                brightness = requestBrightness;
+                requested = false;
+                drawing = true;
+            }
+            try {
+                apply(work, count);
+                if (width > 0 && height > 0) {
+                    drawFrame(width, height, rotation, brightness);
+                    frameReady.run();
+                }
+            } catch (Throwable ex) {
+                // keep the worker going so later frames are still drawn, even
+                // after an OutOfMemoryError from a frame too big to draw.
+                // The tiles may be half drawn so they are all drawn again.
+                Logger.getLogger(RenderWorker.class.getName()).log(Level.SEVERE, null, ex);
+                tileCache.invalidateAll();
+            } finally {
+                synchronized (lock) {
+                    drawing = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // bring the index and tiles up to date
+    private void apply(int[] work, int count) {
+        Rectangle bounds = new Rectangle();
+        for (int i = 0; i < count; i += OP_SIZE) {
+            bounds.setBounds(work[i + 2], work[i + 3], work[i + 4], work[i + 5]);
+            switch (work[i]) {
+                case INSERT:
+                    shapeIndex.insert(work[i + 1], bounds);
+                    tileCache.invalidate(bounds);
+                    break;
+                case REMOVE:
+                    shapeIndex.remove(work[i + 1], bounds);
+                    tileCache.invalidate(bounds);
+                    break;
+                case INSERT_ALL:
+                    // always follows a clear, so the tiles are already invalid
+                    for (int index = work[i + 1]; index < work[i + 2]; index++) {
+                        shapeIndex.insert(index, paddedBounds(shapes, index));
+                    }
+                    break;
+                default:
+                    shapeIndex.clear();
+                    tileCache.invalidateAll();
+                    break;
+            }
+        }
+    }
+
+    // draw into the spare frame and swap it in
+    private void drawFrame(int width, int height, int rotation, float brightness) {
+        Frame frame = spare;
+        if (frame == null || frame.image.getWidth() != width || frame.image.getHeight() != height) {
+            frame = new Frame(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE));
+        }
+        frame.lock.lock();
+        try {
+            Graphics2D g = frame.image.createGraphics();
+            try {
+                // start transparent so the panel background shows through
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, width, height);
+                g.setComposite(AlphaComposite.SrcOver);
+                tileCache.paint(g, null, width, height, rotation, 1);
+            } finally {
+                g.dispose();
+            }
+            BrightnessFilter.apply(frame.image, brightness);
+        } finally {
+            frame.lock.unlock();
+        }
+        spare = latest.getAndSet(frame);
+    }
+
+    /*
+     * Draw the shapes that overlap an area of the drawing.  Called by the
+     * tile cache with a graphics object that is already rotated.
+     */
+    private void drawShapes(Graphics2D g2d, Rectangle sceneArea, float brightness) {
+        // Loop though the shapes the index says are in this area
+        // of the drawing, in the order they were added, drawing shapes
+        // of the same colour and thickness together
+        batcher.begin(g2d, brightness);
+        for (int i : shapeIndex.query(sceneArea)) {
+            batcher.add(shapes, i);
+        }
+        batcher.end();
+    }
+
+    /*
+     * A frame image and the lock held while it is drawn or copied
+     */
+    private static final class Frame {
+
+        final BufferedImage image;
+        final ReentrantLock lock = new ReentrantLock();
+
+        Frame(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
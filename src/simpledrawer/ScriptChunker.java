@@ -0,0 +1,362 @@
+/*
+ * ScriptChunker.java
+ *
+ *
+ * Splits an XML script file into chunks that can be parsed on their own, so
+ * a large file can be parsed by several threads at once.  The file is split
+ * just before the start tag of a shape element that is a child of the root
+ * element.  Each chunk is given the start of the file (the XML declaration,
+ * the root start tag and anything else before the first shape) in front and
+ * the root end tag after, which makes it a complete script of its own.  The
+ * first chunks are small so the first shapes can be passed on without
+ * waiting for a whole chunk to be parsed.
+ *
+ * The file is scanned a byte at a time to find the tags and how deeply each
+ * is nested; comments, CDATA sections, processing instructions and quoted
+ * attribute values are skipped.  The scan only goes as far as the chunks
+ * asked for so far, so parsing starts straight away.  A shape that is not a
+ * child of the root, e.g. one inside a wrapper element, stops the splitting:
+ * the rest of the file becomes the last chunk, and isRest() tells the
+ * caller to parse it as it is read rather than all at once.  If that
+ * happens before the first shape, or the document type declaration has an
+ * internal subset (which can declare entities), or the file starts with a
+ * UTF-16 byte order mark, the file is not split at all and isSplit()
+ * returns false.  The scan reads the tags as ASCII bytes so the file must
+ * use an encoding such as UTF-8 where they are.
+ */
+package simpledrawer;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class ScriptChunker implements Closeable {
+
+    private static final byte[] SHAPE_NAME = ShapeEventGeneratorFromXML.SHAPE_TAG.getBytes(StandardCharsets.US_ASCII);
+
+    // size of the first chunk; each chunk after is twice as big until they
+    // reach the chunk size
+    private static final int FIRST_CHUNK_SIZE = 64 * 1024;
+
+    // how much of the file is read at a time when scanning it
+    private static final int WINDOW = 64 * 1024;
+
+    // first start tag that is not a declaration, processing instruction or comment
+    private static final Pattern ROOT = Pattern.compile("<!--.*?-->|<[?!][^>]*>|<([^\\s/>]+)", Pattern.DOTALL);
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final byte[] header; // everything before the first shape
+    private final byte[] footer; // the root end tag
+
+    // guarded by this
+    private long[] starts = new long[16]; // where each chunk found so far starts
+    private int count; // number of chunks found so far
+    private boolean finished; // every chunk has been found
+    private boolean nested; // a shape that is not a child of the root was found
+
+    // used by the scan, on the thread asking for chunks
+    private final Scanner in = new Scanner();
+    private byte[] name = new byte[64];
+    private int depth;
+    private boolean rootSeen;
+    private int step; // roughly the size of the next chunk
+    private long next; // where the next chunk can start
+
+    /**
+     * @param file the script file
+     * @param chunkSize roughly how many bytes of the file go in each chunk
+     * @throws IOException - problem reading the file
+     */
+    ScriptChunker(Path file, int chunkSize) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            this.chunkSize = chunkSize;
+            // start with small chunks so the first shapes are ready quickly
+            step = Math.min(chunkSize, FIRST_CHUNK_SIZE);
+            count = 1;
+            byte[] start = read(0, (int) Math.min(size, 2));
+            boolean utf16 = start.length == 2 && ((start[0] & 0xff) == 0xfe || (start[0] & 0xff) == 0xff);
+            long firstShape = utf16 ? stop() : nextShape();
+            if (firstShape < 0) { // no shapes, or cannot be split
+                header = new byte[0];
+                footer = new byte[0];
+                finished = true;
+                return;
+            }
+            header = read(0, (int) firstShape);
+            footer = rootEndTag(header);
+            next = firstShape + step;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return false if the file could not be split and must be parsed as a
+     * whole, e.g. by ShapeEventGeneratorFromXML.processScriptFile()
+     */
+    synchronized boolean isSplit() {
+        return !(nested && count == 1);
+    }
+
+    /**
+     * Find out if there is a chunk, scanning the file as far as the end of
+     * it if need be.  Chunks must be asked about in order, on one thread.
+     *
+     * @param index which chunk, starting at 0
+     * @return true if the file has the chunk
+     * @throws IOException - problem reading the file
+     */
+    synchronized boolean hasChunk(int index) throws IOException {
+        // the start of the chunk after is needed to know where this one ends
+        while (!finished && count <= index + 1) {
+            long start = nextShape();
+            if (start < 0) {
+                finished = true;
+                break;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = start;
+            step = (int) Math.min(chunkSize, step * 2L);
+            next = start + step;
+        }
+        return index < count;
+    }
+
+    /**
+     * @param index a chunk the file has
+     * @return true if the chunk is the rest of a file that could not be
+     * split any further, so is not read into memory by chunk() and should be
+     * parsed as it is read
+     */
+    synchronized boolean isRest(int index) {
+        return nested && index == count - 1;
+    }
+
+    /**
+     * Read a chunk.  Chunks may be read by several threads at once, once
+     * hasChunk() has found them.
+     *
+     * @param index which chunk, starting at 0
+     * @return the chunk as a complete script
+     * @throws IOException - problem reading the file
+     */
+    InputStream chunk(int index) throws IOException {
+        long start, end;
+        boolean last, rest;
+        synchronized (this) {
+            start = starts[index];
+            last = index + 1 >= count;
+            end = last ? size : starts[index + 1];
+            rest = isRest(index);
+        }
+        InputStream body;
+        if (rest) {
+            // only read by the thread scanning the file, which is finished with it
+            body = Channels.newInputStream(channel.position(start));
+        } else if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Script chunk is too big");
+        } else {
+            body = new ByteArrayInputStream(read(start, (int) (end - start)));
+        }
+        // the first chunk already has the header and the last the footer
+        if (index > 0) {
+            body = new SequenceInputStream(new ByteArrayInputStream(header), body);
+        }
+        if (!last) {
+            body = new SequenceInputStream(body, new ByteArrayInputStream(footer));
+        }
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+     * Scan on to the next shape that is a child of the root and starts at
+     * or after next.  Returns its position, or -1 at the end of the file or
+     * if the file cannot be split any further.
+     */
+    private long nextShape() throws IOException {
+        for (int c = in.next(); c >= 0; c = in.next()) {
+            if (c != '<') {
+                continue;
+            }
+            long tag = in.position() - 1;
+            c = in.next();
+            if (c == '?') {
+                in.skipPast("?>");
+            } else if (c == '!') {
+                if (in.next() == '-') {
+                    in.skipPast("-->");
+                } else if (depth > 0) {
+                    in.skipPast("]]>"); // CDATA
+                } else if (in.skipTag()) {
+                    return stop(); // DOCTYPE with an internal subset
+                }
+            } else if (c == '/') {
+                depth--;
+                in.skipTag();
+            } else {
+                int length = 0;
+                int colon = -1;
+                while (c > ' ' && c != '/' && c != '>') {
+                    if (length == name.length) {
+                        name = Arrays.copyOf(name, length * 2);
+                    }
+                    if (c == ':') {
+                        colon = length;
+                    }
+                    name[length++] = (byte) c;
+                    c = in.next();
+                }
+                boolean empty = c == '/' || (c != '>' && in.skipTag());
+                if (c == '/') {
+                    in.skipTag();
+                }
+                if (depth == 0 && rootSeen) {
+                    return stop(); // more than one root, left for the parser to report
+                }
+                rootSeen = true;
+                int level = depth; // 1 for a child of the root
+                if (!empty) {
+                    depth++;
+                }
+                if (isShape(name, colon + 1, length)) {
+                    if (level != 1) {
+                        return stop();
+                    }
+                    if (tag >= next) {
+                        return tag;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private synchronized long stop() {
+        nested = true;
+        return -1;
+    }
+
+    private static boolean isShape(byte[] name, int from, int to) {
+        if (to - from != SHAPE_NAME.length) {
+            return false;
+        }
+        for (int i = 0; i < SHAPE_NAME.length; i++) {
+            if (name[from + i] != SHAPE_NAME[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] rootEndTag(byte[] header) throws IOException {
+        // the header has no shapes so this only finds the root
+        Matcher m = ROOT.matcher(new String(header, StandardCharsets.ISO_8859_1));
+        while (m.find()) {
+            if (m.group(1) != null) {
+                return ("</" + m.group(1) + ">").getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+        throw new IOException("Script has no root element before the first shape");
+    }
+
+    /*
+     * Reads the file from the start a window at a time
+     */
+    private final class Scanner {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(WINDOW);
+        private long base; // position in the file of the start of the buffer
+        private int at, length;
+
+        // the next byte, or -1 at the end of the file
+        int next() throws IOException {
+            if (at == length) {
+                base += length;
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, base + buffer.position()) > 0) {
+                    // keep reading until the window is full
+                }
+                at = 0;
+                length = buffer.position();
+                if (length == 0) {
+                    return -1;
+                }
+            }
+            return buffer.array()[at++] & 0xff;
+        }
+
+        // position in the file of the next byte
+        long position() {
+            return base + at;
+        }
+
+        void skipPast(String end) throws IOException {
+            int matched = 0;
+            for (int c = next(); c >= 0; c = next()) {
+                if (c == end.charAt(matched)) {
+                    if (++matched == end.length()) {
+                        return;
+                    }
+                } else {
+                    matched = c == end.charAt(0) ? 1 : 0;
+                }
+            }
+        }
+
+        /*
+         * Skip to the end of a tag, over any quoted attribute values.
+         * Returns true if the tag ended with "/>", or for a declaration if
+         * it had a "[".
+         */
+        boolean skipTag() throws IOException {
+            int last = 0;
+            boolean bracket = false;
+            for (int c = next(); c >= 0; c = next()) {
+                if (c == '"' || c == '\'') {
+                    for (int q = next(); q >= 0 && q != c; q = next()) {
+                        // skip the quoted value
+                    }
+                } else if (c == '[') {
+                    bracket = true;
+                } else if (c == '>') {
+                    return last == '/' || bracket;
+                }
+                last = c;
+            }
+            return false;
+        }
+    }
+}
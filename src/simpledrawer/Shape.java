@@ -7,6 +7,7 @@ package simpledrawer;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.List;
 
 /**
@@ -56,4 +57,25 @@ public class Shape {
     public void setShapeType(ShapeType shapeType) {
         this.shapeType = shapeType;
     }
+
+    /**
+     * The area covered by the shape's vertices, ignoring line thickness.
+     * An oval stores its size rather than a second corner in the second
+     * vertex (see OvalDrawer) so it is treated differently.
+     *
+     * @return the bounding rectangle of the shape
+     */
+    public Rectangle getBounds() {
+        Point first = vertices.get(0);
+        Rectangle bounds = new Rectangle(first.x, first.y, 0, 0);
+        if (shapeType == ShapeType.OVAL) {
+            Point size = vertices.get(1);
+            bounds.add(first.x + size.x, first.y + size.y);
+        } else {
+            for (Point p : vertices) {
+                bounds.add(p);
+            }
+        }
+        return bounds;
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * ShapeBatcher.java
+ *
+ *
+ * Draws shapes in batches.  Changing the colour or stroke of a Graphics2D
+ * costs far more than drawing a simple line, so consecutive shapes that
+ * share a colour and thickness are added to one Path2D and drawn with a
+ * single call.  A batch ends as soon as a shape with a different colour or
+ * thickness comes along, so shapes are still drawn in the order they were
+ * added and overlapping shapes look exactly the same.
+ *
+ * A ShapeBatcher reuses its path and is not safe to share between threads.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.BitSet;
+
+public class ShapeBatcher {
+
+    /**
+     * Most shapes drawn in one call, stops a huge drawing building a huge path
+     */
+    public static final int MAX_BATCH_SIZE = 4096;
+
+    private final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, 1024);
+
+    // curves taken out of the path when drawing thin lines
+    private final Path2D.Float curves = new Path2D.Float(Path2D.WIND_NON_ZERO, 256);
+    private final float[] coords = new float[6];
+
+    // furthest in pixels the lines drawn for a thin curve are from the curve
+    private static final double FLATNESS = 0.25;
+
+    private Graphics2D g2d;
+    private float brightness;
+
+    // settings shared by the shapes in the current batch
+    private Color colour;
+    private int thickness;
+    private int batchSize;
+
+    /**
+     * Start drawing shapes
+     *
+     * @param g2d Graphics2D object used for drawing
+     * @param brightness the current brightness being used to draw
+     */
+    public void begin(Graphics2D g2d, float brightness) {
+        this.g2d = g2d;
+        this.brightness = brightness;
+        batchSize = 0;
+        path.reset();
+    }
+
+    /**
+     * Draw a shape, or at least add it to the current batch
+     *
+     * @param store the shapes of the drawing
+     * @param index position of the shape to draw
+     */
+    public void add(ShapeSource store, int index) {
+        Color c = ColourCache.getScaledColour(store.getArgb(index), brightness);
+        int t = store.getThickness(index);
+        if (batchSize > 0 && (t != thickness || c.getRGB() != colour.getRGB()
+                || batchSize == MAX_BATCH_SIZE)) {
+            flush();
+        }
+        colour = c;
+        thickness = t;
+        store.getShapeType(index).getDrawer().appendShape(path, store, index);
+        batchSize++;
+    }
+
+    /**
+     * Draw whatever is left in the current batch. Must be called after the
+     * last shape has been added.
+     */
+    public void end() {
+        flush();
+        g2d = null;
+    }
+
+    /**
+     * Finish the current batch early, so the next shape starts a new one
+     */
+    public void breakBatch() {
+        flush();
+    }
+
+    /**
+     * Work out where each batch starts when every shape in a store is added
+     * in order.  Something that draws only some of the shapes, e.g. the
+     * ones in one tile, breaks its batches at the same places so the shapes
+     * are drawn in the same groups as when they are all drawn together.
+     *
+     * @param store the shapes of the drawing
+     * @param brightness the brightness the shapes are drawn with
+     * @return the positions of the shapes that start a batch
+     */
+    public static BitSet batchStarts(ShapeSource store, float brightness) {
+        BitSet starts = new BitSet(store.size());
+        int rgb = 0;
+        int t = 0;
+        int size = 0;
+        for (int i = 0; i < store.size(); i++) {
+            // only the RGB is compared, as the scaled colours are opaque
+            int c = ColourMath.scale(store.getArgb(i), brightness) & 0xffffff;
+            int ti = store.getThickness(i);
+            if (size == 0 || ti != t || c != rgb || size == MAX_BATCH_SIZE) {
+                starts.set(i);
+                size = 0;
+            }
+            rgb = c;
+            t = ti;
+            size++;
+        }
+        return starts;
+    }
+
+    private void flush() {
+        if (batchSize == 0) {
+            return;
+        }
+        g2d.setColor(colour);
+        g2d.setStroke(StrokeCache.getStroke(thickness));
+        if (thickness <= 1) {
+            drawThin();
+        } else {
+            g2d.draw(path);
+        }
+        path.reset();
+        batchSize = 0;
+    }
+
+    /*
+     * When a one pixel wide line runs off the edge of the image drawLine()
+     * and a stroked path don't always choose the same pixels, which would
+     * show as seams between tiles.  So thin straight lines are drawn one at
+     * a time with drawLine() (still with only one colour and stroke change)
+     * and only the curves are drawn as a path.
+     */
+    private void drawThin() {
+        curves.reset();
+        float moveX = 0, moveY = 0;
+        boolean inCurve = false;
+        for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    moveX = coords[0];
+                    moveY = coords[1];
+                    inCurve = false;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    g2d.drawLine((int) moveX, (int) moveY, (int) coords[0], (int) coords[1]);
+                    moveX = coords[0];
+                    moveY = coords[1];
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    if (!inCurve) {
+                        curves.moveTo(moveX, moveY);
+                        inCurve = true;
+                    }
+                    curves.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (inCurve) {
+                        curves.closePath();
+                    }
+                    break;
+            }
+        }
+        if (curves.getCurrentPoint() != null) {
+            drawFlattened();
+        }
+    }
+
+    /*
+     * A thin curve that runs off the edge of the image has the same
+     * problem: how finely the curve is split into lines depends on where the
+     * edge is.  So thin curves are split here, into lines no more than
+     * FLATNESS pixels from the curve, and drawn with drawLine().
+     */
+    private void drawFlattened() {
+        int startX = 0, startY = 0, lastX = 0, lastY = 0;
+        for (PathIterator it = curves.getPathIterator(null, FLATNESS); !it.isDone(); it.next()) {
+            int segment = it.currentSegment(coords);
+            if (segment == PathIterator.SEG_CLOSE) {
+                if (lastX != startX || lastY != startY) {
+                    g2d.drawLine(lastX, lastY, startX, startY);
+                }
+                lastX = startX;
+                lastY = startY;
+                continue;
+            }
+            int x = Math.round(coords[0]);
+            int y = Math.round(coords[1]);
+            if (segment == PathIterator.SEG_MOVETO) {
+                startX = x;
+                startY = y;
+            } else if (x != lastX || y != lastY) {
+                g2d.drawLine(lastX, lastY, x, y);
+            }
+            lastX = x;
+            lastY = y;
+        }
+    }
+}
@@ -4,11 +4,14 @@
  *
  * Represents a shape event holding data for a shape read from file
  *
+ * A generator in reuse mode passes the same ShapeEvent to its listeners
+ * for every shape, changing its fields between calls.  A listener that
+ * wants to keep such an event must take a snapshot() of it, or copy its
+ * fields, before it returns.
  */
 package simpledrawer;
 
 import java.awt.*;
-import java.lang.reflect.Field;
 
 public class ShapeEvent {
 
@@ -24,6 +27,8 @@ public class ShapeEvent {
 
     private String eventType; // currently always SHAPE
 
+    private boolean reused; // will be changed for the next shape
+
     public ShapeEvent(int xs, int ys, int xe, int ye, Color c, int t, ShapeType st, String eType) {
         xStart = xs;
         yStart = ys;
@@ -42,6 +47,38 @@ public class ShapeEvent {
         this(0, 0, 0, 0, Color.BLACK, 0, ShapeType.LINE, "SHAPE");
     }
 
+    /**
+     * Set all the fields back to those of a default shape, ready to be
+     * reused for another shape
+     */
+    public void reset() {
+        xStart = yStart = xEnd = yEnd = 0;
+        colour = Color.BLACK;
+        thickness = 0;
+        shapeType = ShapeType.LINE;
+        eventType = "SHAPE";
+    }
+
+    /**
+     * @return true if this event will be reused for another shape once the
+     * listeners have been called, so must not be kept
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
+    void setReused(boolean reused) {
+        this.reused = reused;
+    }
+
+    /**
+     * @return a copy of this event that cannot be changed, and so can be
+     * kept after the event itself has been reused
+     */
+    public ShapeEvent snapshot() {
+        return new Snapshot(this);
+    }
+
     public int getXStart() {
         return xStart;
     }
@@ -85,21 +122,14 @@ public class ShapeEvent {
     /**
      * The method converts the string representation of the colour passed to it
      * to the corresponding static constant of class Color e.g. "red" will be
-     * converted to Color.RED. The strange code is an example of "reflection".
-     * See
-     * http://stackoverflow.com/questions/5822384/getting-a-color-from-a-string-input
-     * for more explanation.
+     * converted to Color.RED. Names registered with ColourTable and hex values
+     * such as "#FF8000" can also be used. An unknown colour gives black.
      *
      * @param colour string representation of the Color required
      */
     public void setColourByString(String colour) {
-        try {
-            Color c;
-            Field f = Color.class.getField(colour.toUpperCase());
-            this.colour = (Color) f.get(null);
-        } catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException ex) {
-            this.colour = Color.BLACK;
-        }
+        Color c = ColourTable.lookup(colour);
+        this.colour = c != null ? c : Color.BLACK;
     }
 
     public int getThickness() {
@@ -130,5 +160,79 @@ public class ShapeEvent {
     public String toString() {
         return "ShapeEvent{" + "xStart=" + xStart + ", yStart=" + yStart + ", xEnd=" + xEnd + ", yEnd=" + yEnd + ", colour=" + colour + ", thickness=" + thickness + ", shapeType=" + shapeType + ", eventType=" + eventType + '}';
     }
+
+    /*
+     * A ShapeEvent whose setters all refuse to change it
+     */
+    private static final class Snapshot extends ShapeEvent {
+
+        Snapshot(ShapeEvent se) {
+            super(se.xStart, se.yStart, se.xEnd, se.yEnd, se.colour, se.thickness, se.shapeType, se.eventType);
+        }
+
+        @Override
+        public ShapeEvent snapshot() {
+            return this;
+        }
+
+        @Override
+        public void reset() {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setXStart(int xStart) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setYStart(int yStart) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setXEnd(int xEnd) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setYEnd(int yEnd) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setColour(Color colour) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setColourByString(String colour) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setThickness(int thickness) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setShapeType(ShapeType shapeType) {
+            throw unchangeable();
+        }
+
+        @Override
+        public void setEventType(String eventType) {
+            throw unchangeable();
+        }
+
+        @Override
+        void setReused(boolean reused) {
+            throw unchangeable();
+        }
+
+        private static UnsupportedOperationException unchangeable() {
+            return new UnsupportedOperationException("A ShapeEvent snapshot cannot be changed");
+        }
+    }
     
 }
@@ -0,0 +1,268 @@
+/**
+ * ShapeEventGeneratorFromJSON reads a JSON file which holds a list of shapes,
+ * in the format of stored_shapes.json. It generates ShapeEvents which
+ * listeners can register to receive, in the same way as
+ * ShapeEventGeneratorFromXML.
+ *
+ * The file is read with Gson's streaming JsonReader one shape at a time and
+ * each shape is passed to the listeners as soon as it has been read, so the
+ * whole file is never held in memory.
+ *
+ * @version 1.0
+ */
+
+package simpledrawer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+public class ShapeEventGeneratorFromJSON {
+
+    /**
+     * Name of the array holding the shapes
+     */
+    public final static String LIST_NAME = "listOfShapeEvents";
+
+    // list of listeners registered to receive shape events
+    private final ShapeEventList shapeListeners;
+
+    // the colour of the last shape, as most shapes share a colour with the
+    // one before
+    private Color lastColour = Color.BLACK;
+
+    // in reuse mode, the one event used for every shape
+    private boolean reuseEvents;
+    private ShapeEvent reusableShape;
+
+    public ShapeEventGeneratorFromJSON() {
+        shapeListeners = new ShapeEventList();
+    }
+
+    /**
+     * Turn reuse mode on or off.  In reuse mode the same ShapeEvent is
+     * passed to the listeners for every shape, so reading a file makes
+     * almost no garbage.  Listeners must copy what they need from the event,
+     * or keep its snapshot(), before they return.  Listeners registered for
+     * batches or on a queue are given snapshots.
+     *
+     * @param reuseEvents - true to reuse one event for every shape
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        this.reuseEvents = reuseEvents;
+        if (reuseEvents && reusableShape == null) {
+            reusableShape = new ShapeEvent();
+            reusableShape.setReused(true);
+        }
+    }
+
+    /**
+     * @return true if one ShapeEvent is reused for every shape
+     */
+    public boolean isReuseEvents() {
+        return reuseEvents;
+    }
+
+    /**
+     *
+     * @param filename - filename of the JSON file to be processed
+     * @throws IOException - problem reading or parsing the file
+     */
+    public void processScriptFile(String filename) throws IOException {
+        try (Reader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(filename), StandardCharsets.UTF_8), 64 * 1024)) {
+            processScript(in);
+        }
+    }
+
+    /**
+     * Read the shapes from a JSON document. The document is either an object
+     * with the shapes in a "listOfShapeEvents" array, as written by Gson, or
+     * just the array.
+     *
+     * @param in - the document
+     * @throws IOException - problem reading or parsing the document
+     */
+    public void processScript(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readShapes(reader);
+            } else {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals(LIST_NAME)) {
+                        readShapes(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+        } finally {
+            shapeListeners.flush(); // pass on the last batches
+        }
+    }
+
+    /*
+     * Read the array of shapes, passing each to the listeners as it is read
+     */
+    private void readShapes(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            fireShapeEvent(readShape(reader));
+        }
+        reader.endArray();
+    }
+
+    /*
+     * Read one shape.  Any value that is missing keeps the default from
+     * ShapeEvent's default constructor.
+     */
+    private ShapeEvent readShape(JsonReader reader) throws IOException {
+        ShapeEvent se;
+        if (reuseEvents) {
+            se = reusableShape;
+            se.reset();
+        } else {
+            se = new ShapeEvent();
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "xStart":
+                    se.setXStart(reader.nextInt());
+                    break;
+                case "yStart":
+                    se.setYStart(reader.nextInt());
+                    break;
+                case "xEnd":
+                    se.setXEnd(reader.nextInt());
+                    break;
+                case "yEnd":
+                    se.setYEnd(reader.nextInt());
+                    break;
+                case "colour":
+                    se.setColour(readColour(reader));
+                    break;
+                case "thickness":
+                    se.setThickness(reader.nextInt());
+                    break;
+                case "shapeType":
+                    String type = reader.nextString();
+                    try {
+                        se.setShapeType(ShapeType.valueOf(type.toUpperCase()));
+                    } catch (IllegalArgumentException ex) {
+                        throw new IOException("Not a valid shape type: " + type + " at " + reader);
+                    }
+                    break;
+                case "eventType":
+                    se.setEventType(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return se;
+    }
+
+    /*
+     * A colour is either a Color written by Gson, whose "value" field holds
+     * the ARGB value, or a colour name as used in XML scripts
+     */
+    private Color readColour(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            Color c = ColourTable.lookup(reader.nextString());
+            return c != null ? c : Color.BLACK;
+        }
+        int argb = Color.BLACK.getRGB();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("value")) {
+                argb = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (argb != lastColour.getRGB()) {
+            lastColour = new Color(argb, true);
+        }
+        return lastColour;
+    }
+
+    /*
+     * Pass a shape event to the listeners registered for its type
+     */
+    private void fireShapeEvent(ShapeEvent se) {
+        shapeListeners.fireShapeEvent(this, se);
+    }
+
+    /**
+     * registerShapeEventListener() is called by objects that want to be
+     * notified when an event occurs,
+     *
+     * @param type - type of the event listener is interested in (e.g. "SHAPE")
+     * @param sel - reference to the listener object
+     */
+    public void registerShapeEventListener(String type, ShapeEventListener sel) {
+        shapeListeners.addListener(type, sel);
+    }
+
+    /**
+     * Register a listener that is called on another thread, so it does not
+     * slow down the reading.  See ShapeEventList.
+     *
+     * @param type - type of the event listener is interested in (e.g. "SHAPE")
+     * @param sel - reference to the listener object
+     * @param capacity - most events waiting for the listener
+     * @param backPressure - what to do when that many events are waiting
+     */
+    public void registerShapeEventListener(String type, ShapeEventListener sel, int capacity,
+            ShapeEventList.BackPressure backPressure) {
+        shapeListeners.addListener(type, sel, capacity, backPressure);
+    }
+
+    /**
+     * Register a listener that is given the events in batches.  See
+     * ShapeEventList.addBatchListener().
+     *
+     * @param type - type of the event listener is interested in (e.g. "SHAPE")
+     * @param sel - reference to the listener object
+     * @param batchSize - most events in a batch
+     * @param maxDelay - longest time in milliseconds an event waits in a
+     * batch
+     */
+    public void registerShapeEventBatchListener(String type, ShapeEventListener sel, int batchSize,
+            long maxDelay) {
+        shapeListeners.addBatchListener(type, sel, batchSize, maxDelay);
+    }
+
+    /**
+     * removeShapeEventListener() is called by objects that not longer want to
+     * be notified when an event occurs,
+     *
+     * @param type - type of the event listener wishes to deregister for (e.g.
+     * "SHAPE")
+     * @param sel - reference to the listener object
+     */
+    public void removeShapeEventListener(String type, ShapeEventListener sel) {
+        shapeListeners.removeListener(type, sel);
+    }
+}
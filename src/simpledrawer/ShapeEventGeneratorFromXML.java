@@ -11,8 +11,13 @@ import javax.xml.parsers.*;
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
 
+import java.awt.Color;
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,7 +64,22 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
      */
     public final static String THICK_TAG = "thickness";
 
-    private String currentTag = ""; // current tag being processed
+    // roughly how many bytes of a file each thread parses at a time
+    private final static int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // text of the element being processed, which the parser may hand over
+    // in several pieces.  Reused for every element so no Strings are made.
+    private char[] text = new char[64];
+    private int textLength;
+
+    private static final ShapeType[] SHAPE_TYPES = ShapeType.values();
+    private static final char[][] SHAPE_TYPE_NAMES = new char[SHAPE_TYPES.length][];
+
+    static {
+        for (int i = 0; i < SHAPE_TYPES.length; i++) {
+            SHAPE_TYPE_NAMES[i] = SHAPE_TYPES[i].name().toCharArray();
+        }
+    }
 
     // list of listeners registered to receive dashboard events
     private final ShapeEventList shapeListeners;
@@ -70,6 +90,10 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
     // details of current shape being read
     private ShapeEvent currentShape;
 
+    // in reuse mode, the one event used for every shape
+    private boolean reuseEvents;
+    private ShapeEvent reusableShape;
+
     // to keep track of whether we are processing start position of the shape
     private boolean processingStartPos = false;
 
@@ -106,7 +130,159 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
         xmlReader.setContentHandler(this);
         // Start the parsing process.  As the file is processed methods in the startElement(), endElement() and
         // characters() methods in the current object will be called to handle the content of the XML file.
-        xmlReader.parse(convertToFileURL(filename));
+        try {
+            xmlReader.parse(convertToFileURL(filename));
+        } finally {
+            shapeListeners.flush(); // pass on the last batches
+        }
+    }
+
+    /**
+     * Turn reuse mode on or off.  In reuse mode processScriptFile() passes
+     * the same ShapeEvent to the listeners for every shape, so parsing a
+     * script makes almost no garbage.  Listeners must copy what they need
+     * from the event, or keep its snapshot(), before they return.  Listeners
+     * registered for batches or on a queue are given snapshots.
+     *
+     * processScriptFileInParallel() makes an event for every shape whatever
+     * the mode, as the events are collected before being passed on.
+     *
+     * @param reuseEvents - true to reuse one event for every shape
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        this.reuseEvents = reuseEvents;
+        if (reuseEvents && reusableShape == null) {
+            reusableShape = new ShapeEvent();
+            reusableShape.setReused(true);
+        }
+    }
+
+    /**
+     * @return true if one ShapeEvent is reused for every shape
+     */
+    public boolean isReuseEvents() {
+        return reuseEvents;
+    }
+
+    /**
+     * Process a script file using several threads.  The file is split into
+     * chunks at shape boundaries and the chunks are parsed at the same time,
+     * each by its own parser.  The events are still passed to the listeners
+     * one at a time, in the order the shapes are in the file, on the thread
+     * that called this method.  Only a few chunks are read ahead of the one
+     * whose events are being passed on so memory use does not grow with the
+     * size of the file.
+     *
+     * The file is only split at shapes that are children of the root
+     * element.  From the first shape anywhere else, e.g. inside a wrapper
+     * element, the rest of the file is parsed on this thread as it is read;
+     * a file that starts that way, has a document type declaration with an
+     * internal subset or is in UTF-16 is parsed by processScriptFile()
+     * instead (see ScriptChunker).  Otherwise the file must be in an
+     * encoding such as UTF-8 where the tags are plain ASCII.
+     *
+     * @param filename - filename of the XML file to be processed
+     * @param threads - number of threads to parse with
+     * @throws IOException - problem reading the file
+     * @throws SAXException - problem parsing the file
+     */
+    public void processScriptFileInParallel(String filename, int threads) throws IOException, SAXException {
+        processScriptFileInParallel(filename, threads, CHUNK_SIZE);
+    }
+
+    /* chunkSize is roughly how many bytes of the file go in each chunk */
+    void processScriptFileInParallel(String filename, int threads, int chunkSize) throws IOException, SAXException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Future<List<ShapeEvent>>> parsed = new ArrayList<>();
+        try (final ScriptChunker chunker = new ScriptChunker(new File(filename).toPath(), chunkSize)) {
+            if (!chunker.isSplit()) {
+                processScriptFile(filename);
+                return;
+            }
+            int next = 0; // next chunk to start parsing
+            for (int i = 0; chunker.hasChunk(i); i++) {
+                if (chunker.isRest(i)) {
+                    // the rest of the file has shapes that are not children
+                    // of the root so it could not be split
+                    xmlReader.setContentHandler(this);
+                    xmlReader.parse(new InputSource(chunker.chunk(i)));
+                    break;
+                }
+                // keep every thread busy without reading far ahead
+                while (next < i + threads * 2 && chunker.hasChunk(next) && !chunker.isRest(next)) {
+                    final int chunk = next++;
+                    parsed.add(pool.submit(new Callable<List<ShapeEvent>>() {
+                        @Override
+                        public List<ShapeEvent> call() throws Exception {
+                            return parseChunk(chunker.chunk(chunk));
+                        }
+                    }));
+                }
+                List<ShapeEvent> events;
+                try {
+                    events = parsed.get(i).get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    // the pool wraps checked exceptions thrown by a Callable
+                    while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    if (cause instanceof SAXException) {
+                        throw (SAXException) cause;
+                    } else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new SAXException((Exception) cause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while parsing " + filename);
+                }
+                parsed.set(i, null); // let the chunk be garbage collected
+                for (ShapeEvent se : events) {
+                    fireShapeEvent(se);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            shapeListeners.flush();
+        }
+    }
+
+    /**
+     * Process a script file using one thread for each processor
+     *
+     * @param filename - filename of the XML file to be processed
+     * @throws IOException - problem reading the file
+     * @throws SAXException - problem parsing the file
+     */
+    public void processScriptFileInParallel(String filename) throws IOException, SAXException {
+        processScriptFileInParallel(filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Parse one chunk of a script with a new parser, collecting its events
+     */
+    private static List<ShapeEvent> parseChunk(InputStream chunk) throws IOException, SAXException {
+        final List<ShapeEvent> events = new ArrayList<>();
+        ShapeEventGeneratorFromXML generator;
+        try {
+            generator = new ShapeEventGeneratorFromXML();
+        } catch (ParserConfigurationException ex) {
+            throw new SAXException(ex);
+        }
+        generator.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                events.add(se);
+            }
+        });
+        generator.xmlReader.setContentHandler(generator);
+        generator.xmlReader.parse(new InputSource(chunk));
+        return events;
     }
 
     /**
@@ -127,11 +303,16 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
             Attributes atts)
             throws SAXException {
 
-        currentTag = localName;
+        textLength = 0; // any text so far was whitespace between tags
 
-        switch (currentTag) {
+        switch (localName) {
             case SHAPE_TAG:
-                currentShape = new ShapeEvent(); // starting a new shape so create object
+                if (reuseEvents) {
+                    currentShape = reusableShape;
+                    currentShape.reset();
+                } else {
+                    currentShape = new ShapeEvent(); // starting a new shape so create object
+                }
                 currentShape.setEventType("SHAPE");
                 break;
             case START_TAG:
@@ -145,10 +326,9 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
 
     /**
      * characters() is called by the parser when character content is to be
-     * processed. Note that we need to check what type of tag is currently being
-     * processed in order to know what to do with the characters. For instance
-     * if we are processing a delay tag we want to pause processing for the
-     * specified amount of time.
+     * processed. The parser may split the text of one element over several
+     * calls so the characters are only collected here, and are processed
+     * when the end tag is found in endElement().
      *
      * @param ch - array holding the characters to be processed
      * @param start - start position of current characters within the array
@@ -158,48 +338,19 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
     @Override
     public void characters(char ch[], int start, int length)
             throws SAXException {
-        // get the characters into a String and lose any unwanted whitespace
-        String val = new String(ch, start, length).trim();
-
-        if (val.length() < 1) {  // if no characters to process (was all whitespace) just return
-            return;
-        }
-
-        // process the characters based on what type of tag we are currently dealing with.
-        switch (currentTag) {
-            case TYPE_TAG:
-                currentShape.setShapeType(ShapeType.valueOf(val.toUpperCase()));
-                break;
-            case X_TAG: // an x tag can either be for the start or end 
-                if (processingStartPos) {
-                    currentShape.setXStart(Integer.parseInt(val));
-                } else {
-                    currentShape.setXEnd(Integer.parseInt(val));
-                }
-                break;
-            case Y_TAG: // an y tag can either be for the start or end 
-                if (processingStartPos) {
-                    currentShape.setYStart(Integer.parseInt(val));
-                } else {
-                    currentShape.setYEnd(Integer.parseInt(val));
-                }
-                break;
-            case COLOUR_TAG:
-                currentShape.setColourByString(val);
-                break;
-            case THICK_TAG:
-                currentShape.setThickness(Integer.parseInt(val));
-                break;
-
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
         }
+        System.arraycopy(ch, start, text, textLength, length);
+        textLength += length;
     }
 
     /**
      * endElement() is called by the parser when the end tag of an element is
      * encountered. At that point know that we have finished processing that
-     * tag. The only situation we are interested in is when the end "shape" tag
-     * is found. At that point we know that we have all the data for the shape
-     * and can passing the object to any listeners
+     * tag, so its text is complete and can be stored in the current shape.
+     * When the end "shape" tag is found we know that we have all the data for
+     * the shape and can passing the object to any listeners
      *
      * @param uri
      * @param localName - the name of the tag e.g. "dashboard_event"
@@ -210,18 +361,111 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
     public void endElement(String uri, String localName, String qName)
             throws SAXException {
 
+        // lose any unwanted whitespace around the text
+        int start = 0;
+        int end = textLength;
+        while (start < end && text[start] <= ' ') {
+            start++;
+        }
+        while (end > start && text[end - 1] <= ' ') {
+            end--;
+        }
+        textLength = 0;
+
+        if (start < end) {
+            // process the characters based on what type of tag has ended
+            switch (localName) {
+                case TYPE_TAG:
+                    currentShape.setShapeType(parseShapeType(start, end));
+                    break;
+                case X_TAG: // an x tag can either be for the start or end
+                    if (processingStartPos) {
+                        currentShape.setXStart(parseInt(start, end));
+                    } else {
+                        currentShape.setXEnd(parseInt(start, end));
+                    }
+                    break;
+                case Y_TAG: // an y tag can either be for the start or end
+                    if (processingStartPos) {
+                        currentShape.setYStart(parseInt(start, end));
+                    } else {
+                        currentShape.setYEnd(parseInt(start, end));
+                    }
+                    break;
+                case COLOUR_TAG:
+                    Color c = ColourTable.lookup(text, start, end - start);
+                    currentShape.setColour(c != null ? c : Color.BLACK);
+                    break;
+                case THICK_TAG:
+                    currentShape.setThickness(parseInt(start, end));
+                    break;
+            }
+        }
+
         if (localName.equals(SHAPE_TAG)) { // we are at the end of the SHAPE
-            // get all listeners
-            List<ShapeEventListener> listeners = shapeListeners.getListeners(currentShape.getEventType());
-            if (listeners != null) {
-                // loop through the listeners passing the event object to them - this is "firing" the event
-                for (ShapeEventListener sel : listeners) {
-                    sel.processShapeEvent(this, currentShape);
+            fireShapeEvent(currentShape);
+            currentShape = null;
+        }
+    }
+
+    /*
+     * Pass a shape event to the listeners registered for its type
+     */
+    private void fireShapeEvent(ShapeEvent se) {
+        shapeListeners.fireShapeEvent(this, se);
+    }
+
+    /*
+     * Read a whole number from the text without making a String
+     */
+    private int parseInt(int start, int end) throws SAXException {
+        boolean negative = text[start] == '-';
+        int i = negative || text[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw notValid("number", start, end);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw notValid("number", start, end);
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw notValid("number", start, end);
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw notValid("number", start, end);
+        }
+        return (int) value;
+    }
+
+    /*
+     * Find the shape type named by the text, ignoring case
+     */
+    private ShapeType parseShapeType(int start, int end) throws SAXException {
+        int length = end - start;
+        for (int t = 0; t < SHAPE_TYPE_NAMES.length; t++) {
+            char[] name = SHAPE_TYPE_NAMES[t];
+            if (name.length == length) {
+                int i = 0;
+                while (i < length && name[i] == ColourTable.upperCase(text[start + i])) {
+                    i++;
+                }
+                if (i == length) {
+                    return SHAPE_TYPES[t];
                 }
             }
-            currentShape = null;
         }
-        currentTag = "";
+        throw notValid("shape type", start, end);
+    }
+
+    private SAXException notValid(String what, int start, int end) {
+        return new SAXException("Not a valid " + what + ": " + new String(text, start, end - start));
     }
 
     /**
@@ -235,6 +479,35 @@ public class ShapeEventGeneratorFromXML extends DefaultHandler {
         shapeListeners.addListener(type, dbel);
     }
 
+    /**
+     * Register a listener that is called on another thread, so it does not
+     * slow down the parsing.  See ShapeEventList.
+     *
+     * @param type - type of the event listener is interested in (e.g. "SHAPE")
+     * @param dbel - reference to the listener object
+     * @param capacity - most events waiting for the listener
+     * @param backPressure - what to do when that many events are waiting
+     */
+    public void registerShapeEventListener(String type, ShapeEventListener dbel, int capacity,
+            ShapeEventList.BackPressure backPressure) {
+        shapeListeners.addListener(type, dbel, capacity, backPressure);
+    }
+
+    /**
+     * Register a listener that is given the events in batches.  See
+     * ShapeEventList.addBatchListener().
+     *
+     * @param type - type of the event listener is interested in (e.g. "SHAPE")
+     * @param dbel - reference to the listener object
+     * @param batchSize - most events in a batch
+     * @param maxDelay - longest time in milliseconds an event waits in a
+     * batch
+     */
+    public void registerShapeEventBatchListener(String type, ShapeEventListener dbel, int batchSize,
+            long maxDelay) {
+        shapeListeners.addBatchListener(type, dbel, batchSize, maxDelay);
+    }
+
     /**
      * removeShapeEventListener() is called by objects that not longer want to
      * be notified when an event occurs,
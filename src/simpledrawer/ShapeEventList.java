@@ -1,61 +1,545 @@
 package simpledrawer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Holds a Map the keys of which are types of ShapeEvents (e.g type "SHAPE")
- * the values are the list of Listeners registered for that type of event.
+ * the values are the list of Listeners registered for that type of event,
+ * and passes events on to them.
  *
+ * A listener added with addListener(type, listener) is called straight away
+ * on the thread that fires the event.  A listener added with a queue
+ * capacity is called later on an executor instead, so a slow listener does
+ * not hold up the thread firing the events.  Each such listener has its own
+ * bounded queue and gets its events in the order they were fired, on one
+ * thread at a time, with all the events waiting for it passed in one call
+ * of processShapeEvents().  When its queue is full the BackPressure given
+ * decides what happens.
+ *
+ * A listener added with addBatchListener() is given batches of events
+ * collected by count and time, so a listener that hands the shapes to the
+ * GUI is called once for each batch rather than once for each shape.  It is
+ * called on the thread firing the events, except that a batch that has
+ * waited its delay while no more events arrive is passed on by a timer
+ * thread.  It is never called by both at once.
+ *
+ * Batch and queued listeners keep events until they are passed on, so they
+ * are given a snapshot of any event a generator is going to reuse.
+ *
+ * Listeners can be added and removed at any time, from any thread, even
+ * while events are being fired.  The lists of listeners are copied when
+ * they change, so firing an event does not lock them.
  */
 public class ShapeEventList {
 
+    /**
+     * What to do with an event for a listener whose queue is full
+     */
+    public enum BackPressure {
+        /**
+         * wait until there is room, slowing the thread firing the events
+         * down to the speed of the listener
+         */
+        BLOCK,
+        /**
+         * throw the new event away
+         */
+        DROP,
+        /**
+         * throw the oldest waiting event away, so a listener that falls
+         * behind skips ahead to the latest events
+         */
+        COALESCE
+    }
+
+    // most events an executor task passes on before letting other tasks run
+    private static final int DRAIN_LIMIT = 256;
+
+    private static final ExecutorService DISPATCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ShapeEvent dispatch " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // passes on batches that have waited their delay
+    private static final ScheduledExecutorService BATCH_TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ShapeEvent batch timer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     // key is event type, value is list of listeners for that type
-    Map<String, List<ShapeEventListener>> eventListeners;
+    private final ConcurrentMap<String, CopyOnWriteArrayList<Registration>> eventListeners;
+
+    // events thrown away because a queue was full
+    private final AtomicLong dropped = new AtomicLong();
 
     /**
      * default constructor
      */
     public ShapeEventList() {
-        eventListeners = new HashMap<>();
+        eventListeners = new ConcurrentHashMap<>();
     }
 
     /**
-     * Add a ShapeEventListener
+     * Add a ShapeEventListener that is called on the thread firing the event
      *
      * @param type - the type of event listened for (e.g "SHAPE")
      * @param listener - reference to the listener object
      */
     public void addListener(String type, ShapeEventListener listener) {
-        List<ShapeEventListener> dbl = eventListeners.get(type);
+        register(type, new Registration(listener));
+    }
+
+    /**
+     * Add a ShapeEventListener that is called on a shared pool of daemon
+     * threads
+     *
+     * @param type - the type of event listened for (e.g "SHAPE")
+     * @param listener - reference to the listener object
+     * @param capacity - most events waiting for the listener
+     * @param backPressure - what to do when that many events are waiting
+     */
+    public void addListener(String type, ShapeEventListener listener, int capacity, BackPressure backPressure) {
+        addListener(type, listener, capacity, backPressure, DISPATCH_EXECUTOR);
+    }
+
+    /**
+     * Add a ShapeEventListener that is called on an executor.  The listener
+     * is only called by one thread at a time.
+     *
+     * @param type - the type of event listened for (e.g "SHAPE")
+     * @param listener - reference to the listener object
+     * @param capacity - most events waiting for the listener
+     * @param backPressure - what to do when that many events are waiting
+     * @param executor - runs the listener, e.g. SwingUtilities::invokeLater
+     * for a listener that changes the GUI
+     */
+    public void addListener(String type, ShapeEventListener listener, int capacity,
+            BackPressure backPressure, Executor executor) {
+        register(type, new QueuedRegistration(listener, capacity, backPressure, executor));
+    }
+
+    /**
+     * Add a ShapeEventListener that is given events in batches by
+     * processShapeEvents().  A batch is passed on when it is full, when the
+     * delay has passed since the first event in the batch, or when flush()
+     * is called.  Full and flushed batches are passed on by the thread
+     * firing the events; one whose delay runs out is passed on by a timer
+     * thread, so shapes still reach the listener while the events are slow
+     * to arrive.  If the listener throws while called by the timer, the
+     * exception is thrown to the thread firing the events at its next event
+     * or flush(), so a listener can still stop a generator.
+     *
+     * @param type - the type of event listened for (e.g "SHAPE")
+     * @param listener - reference to the listener object
+     * @param batchSize - most events in a batch
+     * @param maxDelay - longest time in milliseconds an event waits in a
+     * batch
+     */
+    public void addBatchListener(String type, ShapeEventListener listener, int batchSize, long maxDelay) {
+        register(type, new BatchRegistration(listener, batchSize, maxDelay));
+    }
+
+    private void register(String type, Registration registration) {
+        CopyOnWriteArrayList<Registration> dbl = eventListeners.get(type);
         if (dbl == null) { // if no listeners for this type already registered
-            dbl = new ArrayList<>(); // create a new list
+            CopyOnWriteArrayList<Registration> created = new CopyOnWriteArrayList<>();
+            dbl = eventListeners.putIfAbsent(type, created);
+            if (dbl == null) {
+                dbl = created;
+            }
         }
-        dbl.add(listener); // add the listener to the list
-        eventListeners.put(type, dbl); // update the map
+        dbl.add(registration); // add the listener to the list
     }
 
     /**
-     * Remove a ShapeEventListener
+     * Remove a ShapeEventListener.  Any events still waiting for it are
+     * thrown away.
      *
      * @param type - the type of event listened for (e.g "SHAPE")
      * @param listener - reference to the listener object
      */
     public void removeListener(String type, ShapeEventListener listener) {
-        List<ShapeEventListener> sel = eventListeners.get(type);
+        List<Registration> sel = eventListeners.get(type);
         if (sel != null) { // if there are any listeners for the specified event type
-            while (sel.remove(listener)); // remove listener looping in case more than one
+            for (Registration r : sel) { // remove listener looping in case more than one
+                if (r.listener == listener && sel.remove(r)) {
+                    r.close();
+                }
+            }
         }
     }
 
     /**
      * Return a list of ShapeEventListeners for a specified type of event
      * @param type - the type of event for which listeners are required (e.g. "SHAPE")
-     * @return - the list of listeners of the specified type
+     * @return - the list of listeners of the specified type, or null if
+     * there are none
      */
     public List<ShapeEventListener> getListeners(String type) {
-        return eventListeners.get(type);
+        List<Registration> sel = eventListeners.get(type);
+        if (sel == null || sel.isEmpty()) {
+            return null;
+        }
+        List<ShapeEventListener> listeners = new ArrayList<>(sel.size());
+        for (Registration r : sel) {
+            listeners.add(r.listener);
+        }
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * Pass an event to the listeners registered for its type.  If the
+     * thread is interrupted while waiting for room in a BLOCK queue the event
+     * is not passed on to that listener or any after it, and the thread's
+     * interrupted status is set again.
+     *
+     * @param originator - the object the event came from
+     * @param se - the event
+     */
+    public void fireShapeEvent(Object originator, ShapeEvent se) {
+        List<Registration> sel = eventListeners.get(se.getEventType());
+        if (sel != null) {
+            try {
+                for (Registration r : sel) {
+                    r.deliver(originator, se);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Pass on the events waiting in the batches of batch listeners.  The
+     * generators call this when they reach the end of a script.
+     */
+    public void flush() {
+        for (List<Registration> sel : eventListeners.values()) {
+            for (Registration r : sel) {
+                r.flush();
+            }
+        }
+    }
+
+    /**
+     * Wait until every event fired so far has been passed on to the queued
+     * listeners
+     *
+     * @param timeout - longest time to wait
+     * @param unit - unit of the timeout
+     * @return true if they were all passed on, false if the time ran out
+     * @throws InterruptedException - the thread was interrupted while waiting
+     */
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (List<Registration> sel : eventListeners.values()) {
+            for (Registration r : sel) {
+                if (!r.awaitIdle(deadline)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of events thrown away because a listener's queue was
+     * full
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    /*
+     * A listener called on the thread firing the event
+     */
+    private static class Registration {
+
+        final ShapeEventListener listener;
+
+        Registration(ShapeEventListener listener) {
+            this.listener = listener;
+        }
+
+        void deliver(Object originator, ShapeEvent se) throws InterruptedException {
+            listener.processShapeEvent(originator, se);
+        }
+
+        void flush() {
+        }
+
+        void close() {
+        }
+
+        /* an event that is passed on later must not be one the generator
+         * is going to reuse */
+        static ShapeEvent keep(ShapeEvent se) {
+            return se.isReused() ? se.snapshot() : se;
+        }
+
+        boolean awaitIdle(long deadline) throws InterruptedException {
+            return true;
+        }
+    }
+
+    /*
+     * A listener called with batches of events, on the thread firing them or
+     * on the batch timer once a batch has waited its delay.  Each batch
+     * schedules one timed flush, cancelled if the batch goes first.
+     */
+    private static final class BatchRegistration extends Registration {
+
+        private final int batchSize;
+        private final long maxDelay; // in nanoseconds
+        private List<ShapeEvent> batch;
+        private Object batchOriginator;
+        private ScheduledFuture<?> timer; // passes on the batch when its delay runs out
+        private RuntimeException failed; // thrown by the listener on the timer
+        private boolean closed;
+
+        BatchRegistration(ShapeEventListener listener, int batchSize, long maxDelay) {
+            super(listener);
+            this.batchSize = Math.max(batchSize, 1);
+            this.maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+            this.batch = new ArrayList<>(this.batchSize);
+        }
+
+        @Override
+        synchronized void deliver(Object originator, ShapeEvent se) {
+            rethrow();
+            if (closed) {
+                return;
+            }
+            if (!batch.isEmpty() && originator != batchOriginator) {
+                flush();
+            }
+            if (batch.isEmpty()) {
+                batchOriginator = originator;
+                final List<ShapeEvent> started = batch;
+                timer = BATCH_TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushLate(started);
+                    }
+                }, maxDelay, TimeUnit.NANOSECONDS);
+            }
+            batch.add(keep(se));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        synchronized void flush() {
+            rethrow();
+            pass();
+        }
+
+        /* pass on a batch whose delay has run out, unless it has already
+         * gone */
+        private synchronized void flushLate(List<ShapeEvent> started) {
+            if (batch == started && failed == null) {
+                try {
+                    pass();
+                } catch (RuntimeException ex) {
+                    failed = ex;
+                }
+            }
+        }
+
+        private void pass() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (!batch.isEmpty()) {
+                List<ShapeEvent> events = batch;
+                batch = new ArrayList<>(batchSize);
+                listener.processShapeEvents(batchOriginator, events);
+            }
+        }
+
+        private void rethrow() {
+            if (failed != null) {
+                RuntimeException ex = failed;
+                failed = null;
+                throw ex;
+            }
+        }
+
+        @Override
+        synchronized void close() {
+            closed = true;
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            batch.clear();
+        }
+    }
+
+    /*
+     * An event waiting in a queue, with the object it came from
+     */
+    private static final class Pending {
+
+        final Object originator;
+        final ShapeEvent event;
+
+        Pending(Object originator, ShapeEvent event) {
+            this.originator = originator;
+            this.event = event;
+        }
+    }
+
+    /*
+     * A listener called on an executor.  At most one task for the listener
+     * is waiting or running on the executor at a time; it passes on the
+     * events in the queue and, if more arrive while it finishes, schedules
+     * another task.
+     */
+    private final class QueuedRegistration extends Registration implements Runnable {
+
+        private final ArrayBlockingQueue<Pending> queue;
+        private final BackPressure backPressure;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        QueuedRegistration(ShapeEventListener listener, int capacity, BackPressure backPressure,
+                Executor executor) {
+            super(listener);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.backPressure = backPressure;
+            this.executor = executor;
+        }
+
+        @Override
+        void deliver(Object originator, ShapeEvent se) throws InterruptedException {
+            if (closed) {
+                return;
+            }
+            Pending p = new Pending(originator, keep(se));
+            switch (backPressure) {
+                case BLOCK:
+                    if (!queue.offer(p)) {
+                        schedule(); // make sure the queue is being emptied before waiting
+                        queue.put(p);
+                    }
+                    break;
+                case DROP:
+                    if (!queue.offer(p)) {
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case COALESCE:
+                    while (!queue.offer(p)) {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                    break;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    scheduled.set(false);
+                    throw ex;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                // pass on what is waiting, a batch for each originator
+                List<ShapeEvent> events = new ArrayList<>();
+                Object originator = null;
+                for (int n = 0; n < DRAIN_LIMIT && !closed; n++) {
+                    Pending p = queue.poll();
+                    if (p == null) {
+                        break;
+                    }
+                    if (!events.isEmpty() && p.originator != originator) {
+                        process(originator, events);
+                        events = new ArrayList<>();
+                    }
+                    originator = p.originator;
+                    events.add(p.event);
+                }
+                if (!events.isEmpty() && !closed) {
+                    process(originator, events);
+                }
+            } finally {
+                scheduled.set(false);
+                if (!queue.isEmpty() && !closed) {
+                    schedule();
+                } else {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void process(Object originator, List<ShapeEvent> events) {
+            try {
+                listener.processShapeEvents(originator, events);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(ShapeEventList.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        @Override
+        void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        @Override
+        synchronized boolean awaitIdle(long deadline) throws InterruptedException {
+            while ((!queue.isEmpty() && !closed) || scheduled.get()) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0) {
+                    return false;
+                }
+                wait(Math.min(wait, 10));
+            }
+            return true;
+        }
     }
 }
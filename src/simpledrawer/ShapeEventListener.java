@@ -1,10 +1,29 @@
 package simpledrawer;
 
+import java.util.List;
+
 /**
  * Interface implemented by classes that want to be notified of ShapeEvents
- * 
+ *
  */
 public interface ShapeEventListener {
     public void processShapeEvent(Object originator, ShapeEvent se);
-    
+
+    /**
+     * Called instead of processShapeEvent() when events are passed on in
+     * batches, for example to a listener registered with
+     * ShapeEventList.addBatchListener().  A listener that hands shapes to the
+     * GUI can override this to do it once for each batch rather than once
+     * for each shape.  By default the events are passed to processShapeEvent()
+     * one at a time.
+     *
+     * @param originator - the object the events came from
+     * @param events - the events in the order they were fired.  The list
+     * belongs to the listener, which may keep it.
+     */
+    default void processShapeEvents(Object originator, List<ShapeEvent> events) {
+        for (ShapeEvent se : events) {
+            processShapeEvent(originator, se);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * ShapeExporter.java
+ *
+ *
+ * Saves a drawing as an XML script (the format of stored_shapes.xml) or as
+ * JSON (the format of stored_shapes.json), so it can be loaded again with
+ * ShapeEventGeneratorFromXML or ShapeEventGeneratorFromJSON.
+ *
+ * The shapes are written one at a time with StAX's XMLStreamWriter or Gson's
+ * JsonWriter straight to a large buffer in front of the file, so no copy of
+ * the whole document is ever built in memory.
+ *
+ * Both formats only hold a start and end point for each shape, so a
+ * triangle or quadrilateral is saved as one line for each of its sides.
+ * XML colours are written as a colour name where there is one, otherwise
+ * as "#rrggbb", which loses any transparency; JSON keeps the exact colour.
+ */
+package simpledrawer;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+public class ShapeExporter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // indentation used in the XML, as in stored_shapes.xml
+    private static final String[] INDENT = {"\n", "\n    ", "\n        ", "\n            "};
+
+    /*
+     * Writes one shape, given by its start and end points, in a format
+     */
+    private interface ShapeWriter {
+        void writeShape(ShapeType st, int xs, int ys, int xe, int ye, int argb, int t) throws Exception;
+    }
+
+    /**
+     * Save a drawing as an XML script, replacing anything already in the
+     * file
+     *
+     * @param shapes the shapes to save
+     * @param file the file to write
+     * @throws IOException - problem writing the file
+     */
+    public void writeXML(ShapeSource shapes, Path file) throws IOException {
+        try (OutputStream out = open(file)) {
+            final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "utf-8");
+            xml.writeStartDocument("utf-8", "1.0");
+            xml.writeCharacters(INDENT[0]);
+            xml.writeStartElement("shape_script");
+            export(shapes, new ShapeWriter() {
+                private int lastArgb;
+                private String lastColour;
+
+                @Override
+                public void writeShape(ShapeType st, int xs, int ys, int xe, int ye, int argb, int t)
+                        throws XMLStreamException {
+                    if (lastColour == null || argb != lastArgb) {
+                        lastArgb = argb;
+                        lastColour = ColourTable.nameOf(argb);
+                        if (lastColour == null) { // transparent, which XML cannot hold
+                            lastColour = String.format("#%06x", argb & 0xFFFFFF);
+                        }
+                    }
+                    xml.writeCharacters(INDENT[1]);
+                    xml.writeStartElement(ShapeEventGeneratorFromXML.SHAPE_TAG);
+                    element(xml, 2, ShapeEventGeneratorFromXML.TYPE_TAG, st.name().toLowerCase());
+                    point(xml, ShapeEventGeneratorFromXML.START_TAG, xs, ys);
+                    point(xml, ShapeEventGeneratorFromXML.END_TAG, xe, ye);
+                    element(xml, 2, ShapeEventGeneratorFromXML.COLOUR_TAG, lastColour);
+                    element(xml, 2, ShapeEventGeneratorFromXML.THICK_TAG, Integer.toString(t));
+                    xml.writeCharacters(INDENT[1]);
+                    xml.writeEndElement();
+                }
+            });
+            xml.writeCharacters(INDENT[0]);
+            xml.writeEndElement();
+            xml.writeCharacters(INDENT[0]);
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Save a drawing as JSON, replacing anything already in the file
+     *
+     * @param shapes the shapes to save
+     * @param file the file to write
+     * @throws IOException - problem writing the file
+     */
+    public void writeJSON(ShapeSource shapes, Path file) throws IOException {
+        try (final JsonWriter json = new JsonWriter(new OutputStreamWriter(open(file), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.name(ShapeEventGeneratorFromJSON.LIST_NAME);
+            json.beginArray();
+            export(shapes, new ShapeWriter() {
+                @Override
+                public void writeShape(ShapeType st, int xs, int ys, int xe, int ye, int argb, int t)
+                        throws IOException {
+                    json.beginObject();
+                    json.name("xStart").value(xs);
+                    json.name("yStart").value(ys);
+                    json.name("xEnd").value(xe);
+                    json.name("yEnd").value(ye);
+                    // the fields Gson writes for a Color
+                    json.name("colour").beginObject();
+                    json.name("value").value(argb);
+                    json.name("falpha").value(0.0);
+                    json.endObject();
+                    json.name("thickness").value(t);
+                    json.name("shapeType").value(st.name());
+                    json.name("eventType").value("SHAPE");
+                    json.endObject();
+                }
+            });
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /*
+     * Pass each shape to the writer, splitting triangles and quadrilaterals
+     * into their sides
+     */
+    private static void export(ShapeSource shapes, ShapeWriter writer) throws IOException {
+        try {
+            for (int i = 0; i < shapes.size(); i++) {
+                ShapeType st = shapes.getShapeType(i);
+                int argb = shapes.getArgb(i);
+                int t = shapes.getThickness(i);
+                int count = shapes.getVertexCount(i);
+                if (st == ShapeType.LINE || st == ShapeType.OVAL) {
+                    writer.writeShape(st, shapes.getX(i, 0), shapes.getY(i, 0),
+                            shapes.getX(i, 1), shapes.getY(i, 1), argb, t);
+                } else {
+                    for (int v = 0; v < count; v++) {
+                        int next = (v + 1) % count;
+                        writer.writeShape(ShapeType.LINE, shapes.getX(i, v), shapes.getY(i, v),
+                                shapes.getX(i, next), shapes.getY(i, next), argb, t);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) { // an XMLStreamException
+            throw new IOException(ex);
+        }
+    }
+
+    private static void element(XMLStreamWriter xml, int depth, String tag, String text)
+            throws XMLStreamException {
+        xml.writeCharacters(INDENT[depth]);
+        xml.writeStartElement(tag);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static void point(XMLStreamWriter xml, String tag, int x, int y) throws XMLStreamException {
+        xml.writeCharacters(INDENT[2]);
+        xml.writeStartElement(tag);
+        element(xml, 3, ShapeEventGeneratorFromXML.X_TAG, Integer.toString(x));
+        element(xml, 3, ShapeEventGeneratorFromXML.Y_TAG, Integer.toString(y));
+        xml.writeCharacters(INDENT[2]);
+        xml.writeEndElement();
+    }
+
+    private static OutputStream open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+}
@@ -7,6 +7,7 @@ package simpledrawer;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.util.Arrays;
 import java.util.List;
 import static simpledrawer.ShapeType.*;
 
@@ -36,4 +37,22 @@ public class ShapeFactory {
       }
       return null;
    }
+
+    /**
+     * Make a shape from a ShapeEvent read from a script file. A script only
+     * gives a start and end point so triangles and quadrilaterals, which need
+     * more points, cannot be made.
+     *
+     * @param se the event describing the shape
+     * @return the shape, or null if the event does not describe a shape that
+     * can be drawn
+     */
+    public Shape getShape(ShapeEvent se) {
+        if (se.getShapeType() != LINE && se.getShapeType() != OVAL) {
+            return null;
+        }
+        List<Point> points = Arrays.asList(new Point(se.getXStart(), se.getYStart()),
+                new Point(se.getXEnd(), se.getYEnd()));
+        return getShape(points, se.getColour(), se.getThickness(), se.getShapeType());
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * ShapeFileReader.java
+ *
+ *
+ * Loads a drawing saved by ShapeFileWriter (see there for the layout of the
+ * file) into a ShapeStore.  The file is memory-mapped a window at a time,
+ * so the operating system reads it straight into memory with no copying,
+ * and the shapes are decoded directly into the store's arrays.
+ */
+package simpledrawer;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ShapeFileReader {
+
+    // how much of the file is mapped at a time
+    private static final long WINDOW = 256L << 20;
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    private FileChannel channel;
+    private long fileSize;
+    private long windowStart; // position of the mapped window in the file
+    private MappedByteBuffer buffer;
+
+    /**
+     * Read a drawing from a file
+     *
+     * @param file the file to read
+     * @return the shapes in the file
+     * @throws IOException - problem reading the file, or it is not a shape
+     * file
+     */
+    public ShapeStore read(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel = fc;
+            fileSize = fc.size();
+            map(0);
+            if (fileSize < ShapeFileWriter.HEADER_SIZE || buffer.getInt() != ShapeFileWriter.MAGIC) {
+                throw new IOException("Not a shape file");
+            }
+            short version = buffer.getShort();
+            if (version != ShapeFileWriter.VERSION) {
+                throw new IOException("Unsupported shape file version " + version);
+            }
+            buffer.getShort(); // reserved
+            long shapeCount = buffer.getLong();
+            long vertexCount = buffer.getLong();
+            if (shapeCount < 0 || shapeCount >= Integer.MAX_VALUE
+                    || vertexCount < 0 || vertexCount >= Integer.MAX_VALUE) {
+                throw new IOException("Too many shapes in shape file");
+            }
+            buffer.position(buffer.position() + 16); // bounds, see readBounds()
+            int paletteSize = buffer.getInt();
+            if (paletteSize < 0 || paletteSize > shapeCount) {
+                throw new IOException("Shape file is corrupt");
+            }
+            int[] palette = new int[paletteSize];
+            for (int p = 0; p < palette.length; p++) {
+                refill(4);
+                palette[p] = buffer.getInt();
+            }
+
+            ShapeStore shapes = new ShapeStore((int) shapeCount, (int) vertexCount);
+            int[] x = new int[ShapeFileWriter.MAX_VERTICES];
+            int[] y = new int[ShapeFileWriter.MAX_VERTICES];
+            int lastX = 0, lastY = 0;
+            for (long i = 0; i < shapeCount; i++) {
+                refill(ShapeFileWriter.MAX_RECORD_SIZE);
+                int tag = buffer.get() & 0xFF;
+                int type = tag & 0x0F;
+                int count = tag >>> 4;
+                int colour = getVarint();
+                if (type >= TYPES.length || colour >= palette.length || colour < 0) {
+                    throw new IOException("Shape file is corrupt at shape " + i);
+                }
+                int thickness = getVarint();
+                int px = lastX, py = lastY;
+                for (int v = 0; v < count; v++) {
+                    px += unzigzag(getVarint());
+                    py += unzigzag(getVarint());
+                    x[v] = px;
+                    y[v] = py;
+                }
+                if (count > 0) {
+                    lastX = x[0];
+                    lastY = y[0];
+                }
+                shapes.add(TYPES[type], palette[colour], thickness, x, y, count);
+            }
+            return shapes;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Shape file is truncated", ex);
+        } finally {
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    /**
+     * Read the area covered by the shapes in a file without loading them
+     *
+     * @param file the file to read
+     * @return the bounds of the shapes, as given by ShapeSource.getBounds()
+     * @throws IOException - problem reading the file, or it is not a shape
+     * file
+     */
+    public static Rectangle readBounds(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ShapeFileWriter.HEADER_SIZE);
+            while (header.hasRemaining() && fc.read(header) >= 0) {
+            }
+            if (header.position() < ShapeFileWriter.HEADER_SIZE || header.getInt(0) != ShapeFileWriter.MAGIC) {
+                throw new IOException("Not a shape file");
+            }
+            int minX = header.getInt(24), minY = header.getInt(28);
+            return new Rectangle(minX, minY, header.getInt(32) - minX, header.getInt(36) - minY);
+        }
+    }
+
+    /*
+     * Make sure at least the given number of bytes are mapped after the
+     * current position, unless the file ends first
+     */
+    private void refill(int needed) throws IOException {
+        if (buffer.remaining() < needed && windowStart + buffer.limit() < fileSize) {
+            map(windowStart + buffer.position());
+        }
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, fileSize - position));
+    }
+
+    private int getVarint() {
+        int b = buffer.get();
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7F;
+        for (int shift = 7; shift < 35; shift += 7) {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return value; // more than 5 bytes, only a corrupt file has these
+    }
+
+    static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * ShapeGrid.java
+ *
+ *
+ * A spatial index over the shapes in a drawing.  The drawing is divided
+ * into a uniform grid of square cells and each cell remembers which shapes
+ * overlap it, so finding the shapes in a small area of a big drawing only
+ * looks at the cells covering that area rather than every shape.
+ *
+ * Shapes are identified by their position in the drawing's list of shapes
+ * and queries return positions in ascending order so shapes can still be
+ * drawn in the order they were added.
+ */
+package simpledrawer;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ShapeGrid {
+
+    /**
+     * Default width and height of a cell in pixels
+     */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    /**
+     * Shapes that would cover more cells than this are not put in cells
+     * but kept in a separate list that every query returns
+     */
+    public static final int MAX_CELLS_PER_SHAPE = 256;
+
+    private final int cellSize;
+
+    // key is the cell's column and row packed into a long
+    private final Map<Long, IntList> cells;
+
+    // shapes too big to be worth storing in the cells
+    private final IntList oversized;
+
+    public ShapeGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public ShapeGrid(int cellSize) {
+        this.cellSize = cellSize;
+        cells = new HashMap<>();
+        oversized = new IntList();
+    }
+
+    /**
+     * Add a shape to the index. Shapes must be inserted in ascending order
+     * of index.
+     *
+     * @param index position of the shape in the drawing
+     * @param bounds area the shape can draw on
+     */
+    public void insert(int index, Rectangle bounds) {
+        int firstCol = cell(bounds.x);
+        int lastCol = cell(bounds.x + bounds.width);
+        int firstRow = cell(bounds.y);
+        int lastRow = cell(bounds.y + bounds.height);
+        long cellCount = (long) (lastCol - firstCol + 1) * (lastRow - firstRow + 1);
+        if (cellCount > MAX_CELLS_PER_SHAPE) {
+            oversized.add(index);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                Long key = key(col, row);
+                IntList cell = cells.get(key);
+                if (cell == null) {
+                    cell = new IntList();
+                    cells.put(key, cell);
+                }
+                cell.add(index);
+            }
+        }
+    }
+
+    /**
+     * Remove a shape from the index, e.g. when adding it is undone.  Shapes
+     * must be removed in the reverse of the order they were inserted, so the
+     * shape removed is always the last one in each of its cells.
+     *
+     * @param index position of the shape in the drawing
+     * @param bounds the area given when the shape was inserted
+     */
+    public void remove(int index, Rectangle bounds) {
+        int firstCol = cell(bounds.x);
+        int lastCol = cell(bounds.x + bounds.width);
+        int firstRow = cell(bounds.y);
+        int lastRow = cell(bounds.y + bounds.height);
+        long cellCount = (long) (lastCol - firstCol + 1) * (lastRow - firstRow + 1);
+        if (cellCount > MAX_CELLS_PER_SHAPE) {
+            oversized.removeLast(index);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                Long key = key(col, row);
+                IntList cell = cells.get(key);
+                if (cell != null && cell.removeLast(index) && cell.size == 0) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all shapes from the index
+     */
+    public void clear() {
+        cells.clear();
+        oversized.clear();
+    }
+
+    /**
+     * Find the shapes that may overlap an area. The result can include
+     * shapes that are near the area but never misses one that overlaps it.
+     *
+     * @param area the area of the drawing being drawn
+     * @return positions of the shapes in ascending order without duplicates
+     */
+    public int[] query(Rectangle area) {
+        IntList found = new IntList();
+        found.addAll(oversized);
+        int firstCol = cell(area.x);
+        int lastCol = cell(area.x + area.width);
+        int firstRow = cell(area.y);
+        int lastRow = cell(area.y + area.height);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                IntList cell = cells.get(key(col, row));
+                if (cell != null) {
+                    found.addAll(cell);
+                }
+            }
+        }
+        return found.toSortedUniqueArray();
+    }
+
+    // the column or row a coordinate falls in, rounding down for negatives
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static Long key(int col, int row) {
+        return ((long) col << 32) | (row & 0xffffffffL);
+    }
+
+    /*
+     * A growable list of ints, used to avoid boxing every shape index
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean removeLast(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                size--;
+                return true;
+            }
+            return false;
+        }
+
+        int[] toSortedUniqueArray() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+        }
+    }
+}
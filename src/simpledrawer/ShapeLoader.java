@@ -0,0 +1,144 @@
+/*
+ * ShapeLoader.java
+ *
+ *
+ * Loads the shapes in an XML script file, or a JSON file if its name ends in
+ * ".json", onto a DrawingPanel.  The file is parsed on background threads
+ * and the shapes are handed to the panel in batches as they are read, so
+ * the first shapes of a large file appear straight away and the GUI carries
+ * on responding while the rest load.
+ *
+ * The generator collects the events into batches, handing one over when it
+ * is full or when the repaint interval has passed since its first shape,
+ * whichever comes first, even if the parser is held up between shapes.
+ * Each batch becomes one publish().  SwingWorker runs
+ * process() on the event dispatch thread and joins up any batches that
+ * arrive while it is busy, so the panel is never flooded with repaints.
+ */
+package simpledrawer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+public class ShapeLoader extends SwingWorker<Integer, List<Shape>> {
+
+    /**
+     * Most shapes handed to the panel in one batch
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    /**
+     * Longest time in milliseconds a shape waits before being handed to the
+     * panel
+     */
+    public static final long DEFAULT_REPAINT_INTERVAL = 100;
+
+    private final DrawingPanel panel;
+    private final String filename;
+    private final int batchSize;
+    private final long repaintInterval;
+
+    // only used by the batch listener, which is called on the background
+    // thread or the batch timer but never on both at once
+    private final ShapeFactory shapeFactory = new ShapeFactory();
+    private int count; // number of shapes loaded
+
+    public ShapeLoader(DrawingPanel panel, String filename) {
+        this(panel, filename, DEFAULT_BATCH_SIZE, DEFAULT_REPAINT_INTERVAL);
+    }
+
+    /**
+     * @param panel the panel to add the shapes to
+     * @param filename the XML or JSON file to load
+     * @param batchSize most shapes handed to the panel in one batch
+     * @param repaintInterval longest time in milliseconds a shape waits before
+     * being handed to the panel
+     */
+    public ShapeLoader(DrawingPanel panel, String filename, int batchSize, long repaintInterval) {
+        this.panel = panel;
+        this.filename = filename;
+        this.batchSize = batchSize;
+        this.repaintInterval = repaintInterval;
+    }
+
+    /*
+     * Parse the file, turning each batch of events into a batch of shapes.
+     * Runs on a background thread.
+     */
+    @Override
+    protected Integer doInBackground() throws Exception {
+        ShapeEventListener listener = new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                processShapeEvents(originator, Collections.singletonList(se));
+            }
+
+            @Override
+            public void processShapeEvents(Object originator, List<ShapeEvent> events) {
+                if (isCancelled()) { // stop the parser
+                    throw new CancellationException();
+                }
+                List<Shape> batch = new ArrayList<>(events.size());
+                for (ShapeEvent se : events) {
+                    Shape aShape = shapeFactory.getShape(se);
+                    if (aShape != null) {
+                        batch.add(aShape);
+                    }
+                }
+                count += batch.size();
+                if (!batch.isEmpty()) {
+                    publish(batch);
+                }
+            }
+        };
+        if (filename.toLowerCase().endsWith(".json")) {
+            ShapeEventGeneratorFromJSON generator = new ShapeEventGeneratorFromJSON();
+            generator.registerShapeEventBatchListener("SHAPE", listener, batchSize, repaintInterval);
+            generator.processScriptFile(filename);
+        } else {
+            ShapeEventGeneratorFromXML generator = new ShapeEventGeneratorFromXML();
+            generator.registerShapeEventBatchListener("SHAPE", listener, batchSize, repaintInterval);
+            generator.processScriptFileInParallel(filename);
+        }
+        return count;
+    }
+
+    /*
+     * Add the batches read so far to the panel.  Runs on the event dispatch
+     * thread.
+     */
+    @Override
+    protected void process(List<List<Shape>> batches) {
+        if (isCancelled()) {
+            return;
+        }
+        for (List<Shape> shapes : batches) {
+            panel.addShapes(shapes);
+        }
+    }
+
+    /*
+     * Tell the user if the file could not be loaded.  Runs on the event
+     * dispatch thread.
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            get();
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.getLogger(ShapeLoader.class.getName()).log(Level.SEVERE, null, ex);
+            JOptionPane.showMessageDialog(panel, "Could not load " + filename + ":\n" + ex.getCause(),
+                    "Load failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * ShapeOverlay.java
+ *
+ *
+ * Lets DrawingPanel draw on top of shapes it must not change, e.g. a
+ * read-only MappedShapeStore.  The shapes underneath are read where they
+ * are and new shapes go in a ShapeStore on top, so the file is never
+ * written and never copied onto the heap.  Taking shapes off the end, or
+ * the start, only hides those underneath.
+ */
+package simpledrawer;
+
+final class ShapeOverlay implements ShapeSource {
+
+    private final ShapeSource base;
+    private int baseFirst, baseSize; // range of base still in the overlay
+    private final ShapeSource added; // shapes drawn on top
+
+    ShapeOverlay(ShapeSource base) {
+        this(base.view(), 0, base.size(), new ShapeStore());
+    }
+
+    private ShapeOverlay(ShapeSource base, int baseFirst, int baseSize, ShapeSource added) {
+        this.base = base;
+        this.baseFirst = baseFirst;
+        this.baseSize = baseSize;
+        this.added = added;
+    }
+
+    @Override
+    public int size() {
+        return baseSize + added.size();
+    }
+
+    @Override
+    public void add(Shape aShape) {
+        added.add(aShape);
+    }
+
+    @Override
+    public void clear() {
+        baseSize = 0;
+        added.clear();
+    }
+
+    @Override
+    public void truncate(int size) {
+        if (size < 0 || size > size()) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", Current size: " + size());
+        }
+        if (size >= baseSize) {
+            added.truncate(size - baseSize);
+        } else {
+            baseSize = size;
+            added.clear();
+        }
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        if (count < 0 || count > size()) {
+            throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + size());
+        }
+        if (count <= baseSize) {
+            baseFirst += count;
+            baseSize -= count;
+        } else {
+            added.removeFirst(count - baseSize);
+            baseSize = 0;
+        }
+    }
+
+    @Override
+    public ShapeType getShapeType(int index) {
+        return index < baseSize ? base.getShapeType(baseFirst + index) : added.getShapeType(index - baseSize);
+    }
+
+    @Override
+    public int getArgb(int index) {
+        return index < baseSize ? base.getArgb(baseFirst + index) : added.getArgb(index - baseSize);
+    }
+
+    @Override
+    public int getThickness(int index) {
+        return index < baseSize ? base.getThickness(baseFirst + index) : added.getThickness(index - baseSize);
+    }
+
+    @Override
+    public int getVertexCount(int index) {
+        return index < baseSize ? base.getVertexCount(baseFirst + index) : added.getVertexCount(index - baseSize);
+    }
+
+    @Override
+    public int getX(int index, int vertex) {
+        return index < baseSize ? base.getX(baseFirst + index, vertex) : added.getX(index - baseSize, vertex);
+    }
+
+    @Override
+    public int getY(int index, int vertex) {
+        return index < baseSize ? base.getY(baseFirst + index, vertex) : added.getY(index - baseSize, vertex);
+    }
+
+    /* The shapes underneath never change so only the ones on top need a
+     * view.  The view is read-only as the shapes on top are.
+     */
+    @Override
+    public ShapeSource view() {
+        return new ShapeOverlay(base, baseFirst, baseSize, added.view());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ShapeRange.java
+ *
+ *
+ * A read-only view of some of the shapes in a ShapeSource, used by
+ * DrawingPanel when its store also holds shapes that have been cleared or
+ * undone, and by ShapeSource.view() to fix the number of shapes another
+ * thread can see.
+ */
+package simpledrawer;
+
+final class ShapeRange implements ShapeSource {
+
+    private final ShapeSource shapes;
+    private final int first, end;
+
+    ShapeRange(ShapeSource shapes, int first, int end) {
+        this.shapes = shapes;
+        this.first = first;
+        this.end = end;
+    }
+
+    @Override
+    public int size() {
+        return end - first;
+    }
+
+    @Override
+    public void add(Shape aShape) {
+        throw new UnsupportedOperationException("A range of shapes is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("A range of shapes is read-only");
+    }
+
+    @Override
+    public void truncate(int size) {
+        throw new UnsupportedOperationException("A range of shapes is read-only");
+    }
+
+    @Override
+    public ShapeType getShapeType(int index) {
+        return shapes.getShapeType(first + index);
+    }
+
+    @Override
+    public int getArgb(int index) {
+        return shapes.getArgb(first + index);
+    }
+
+    @Override
+    public int getThickness(int index) {
+        return shapes.getThickness(first + index);
+    }
+
+    @Override
+    public int getVertexCount(int index) {
+        return shapes.getVertexCount(first + index);
+    }
+
+    @Override
+    public int getX(int index, int vertex) {
+        return shapes.getX(first + index, vertex);
+    }
+
+    @Override
+    public int getY(int index, int vertex) {
+        return shapes.getY(first + index, vertex);
+    }
+
+    // the same range of a view of the shapes
+    @Override
+    public ShapeSource view() {
+        return new ShapeRange(shapes.view(), first, end);
+    }
+}
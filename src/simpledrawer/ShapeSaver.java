@@ -0,0 +1,84 @@
+/*
+ * ShapeSaver.java
+ *
+ *
+ * Saves the drawing on a DrawingPanel to an XML script file, or a JSON file
+ * if its name ends in ".json", using ShapeExporter.  If the name ends in
+ * ".png" the drawing is saved as a picture instead, drawn by TileRenderer.
+ * A view of the
+ * shapes is taken when the saver is made, on the event dispatch thread, and
+ * the file is written on a background thread so the GUI carries on
+ * responding while a large drawing is saved.  Shapes drawn after that are
+ * not saved.
+ */
+package simpledrawer;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+public class ShapeSaver extends SwingWorker<Integer, Void> {
+
+    private final DrawingPanel panel;
+    private final String filename;
+    private final ShapeSource shapes;
+    private final float brightness;
+
+    /**
+     * Must be called on the event dispatch thread
+     *
+     * @param panel the panel whose drawing is saved
+     * @param filename the XML, JSON or PNG file to write
+     */
+    public ShapeSaver(DrawingPanel panel, String filename) {
+        this.panel = panel;
+        this.filename = filename;
+        this.shapes = panel.getShapes().view();
+        this.brightness = panel.getCurrentBrightness();
+    }
+
+    /*
+     * Write the file.  Runs on a background thread.
+     */
+    @Override
+    protected Integer doInBackground() throws Exception {
+        ShapeExporter exporter = new ShapeExporter();
+        if (filename.toLowerCase().endsWith(".png")) {
+            Rectangle area = TileRenderer.getBounds(shapes);
+            if (area.isEmpty()) {
+                throw new IOException("There is nothing to save");
+            }
+            ImageIO.write(new TileRenderer().render(shapes, area, brightness), "png", new File(filename));
+        } else if (filename.toLowerCase().endsWith(".json")) {
+            exporter.writeJSON(shapes, Paths.get(filename));
+        } else {
+            exporter.writeXML(shapes, Paths.get(filename));
+        }
+        return shapes.size();
+    }
+
+    /*
+     * Tell the user if the file could not be saved.  Runs on the event
+     * dispatch thread.
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            get();
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.getLogger(ShapeSaver.class.getName()).log(Level.SEVERE, null, ex);
+            JOptionPane.showMessageDialog(panel, "Could not save " + filename + ":\n" + ex.getCause(),
+                    "Save failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
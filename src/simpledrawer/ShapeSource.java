@@ -0,0 +1,107 @@
+package simpledrawer;
+
+import java.awt.Rectangle;
+
+/**
+ * Interface implemented by the classes that hold the shapes of a drawing
+ * (ShapeStore on the heap, MappedShapeStore in a file). Shapes are read
+ * field by field so drawing them never creates Shape objects.
+ *
+ */
+public interface ShapeSource {
+
+    /**
+     * @return the number of shapes
+     */
+    public int size();
+
+    /**
+     * Add a shape to the end of the drawing
+     *
+     * @param aShape the shape to copy in
+     */
+    public void add(Shape aShape);
+
+    /**
+     * Remove all the shapes
+     */
+    public void clear();
+
+    /**
+     * Remove the shapes after the first few, e.g. when the drawing is
+     * changed after adding them was undone
+     *
+     * @param size number of shapes to keep
+     */
+    public void truncate(int size);
+
+    /**
+     * Remove shapes from the start, e.g. ones that undo can no longer bring
+     * back.  The shapes after move down to fill the gap.  Only sources that
+     * can be changed in place support this.
+     *
+     * @param count number of shapes to remove
+     */
+    default void removeFirst(int count) {
+        throw new UnsupportedOperationException("Cannot remove shapes from the start of " + getClass().getSimpleName());
+    }
+
+    public ShapeType getShapeType(int index);
+
+    /**
+     * @param index position of the shape
+     * @return colour of the shape as an ARGB value (see Color.getRGB())
+     */
+    public int getArgb(int index);
+
+    public int getThickness(int index);
+
+    public int getVertexCount(int index);
+
+    /**
+     * @param index position of the shape
+     * @param vertex which vertex of the shape, starting at 0
+     * @return x coordinate of the vertex
+     */
+    public int getX(int index, int vertex);
+
+    /**
+     * @param index position of the shape
+     * @param vertex which vertex of the shape, starting at 0
+     * @return y coordinate of the vertex
+     */
+    public int getY(int index, int vertex);
+
+    /**
+     * A read-only view of the shapes there are now, for another thread to
+     * read while shapes carry on being added to this source.  Shapes added
+     * later are not in the view.  A shape removed by truncate() or clear()
+     * and then replaced can show through, so a view should only be used
+     * until the next change.  The views of a ShapeStore are never changed
+     * and can be kept for as long as they are needed.
+     *
+     * @return the view
+     */
+    default ShapeSource view() {
+        return new ShapeRange(this, 0, size());
+    }
+
+    /**
+     * The area covered by a shape's vertices, ignoring line thickness. Works
+     * the same way as Shape.getBounds().
+     *
+     * @param index position of the shape
+     * @return the bounding rectangle of the shape
+     */
+    default Rectangle getBounds(int index) {
+        Rectangle bounds = new Rectangle(getX(index, 0), getY(index, 0), 0, 0);
+        if (getShapeType(index) == ShapeType.OVAL) { // second vertex is the size
+            bounds.add(getX(index, 0) + getX(index, 1), getY(index, 0) + getY(index, 1));
+        } else {
+            for (int v = 1; v < getVertexCount(index); v++) {
+                bounds.add(getX(index, v), getY(index, v));
+            }
+        }
+        return bounds;
+    }
+}
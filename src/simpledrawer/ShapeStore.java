@@ -0,0 +1,426 @@
+/*
+ * ShapeStore.java
+ *
+ *
+ * Holds the shapes of a drawing in parallel arrays of primitives rather
+ * than as Shape objects.  A Shape holding a line needs a List, two Points
+ * and a Color (well over 150 bytes) whereas here a line takes 27 bytes:
+ * the type, colour, thickness and vertex offset plus two x,y pairs.
+ *
+ * The vertices of shape i are entries offsets[i] to offsets[i + 1] - 1 of
+ * the xs and ys arrays.  The drawers read the arrays through the getters
+ * below; get(i) returns a lightweight Shape view for code that still wants
+ * a Shape.
+ *
+ * A view() shares the arrays and is never changed afterwards: shapes added
+ * after truncate() or clear() would overwrite shapes a view can still read,
+ * so the first such change copies the arrays and leaves the old ones to the
+ * views.  Changing a stored shape through get() does the same.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShapeStore implements ShapeSource {
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    private int size; // number of shapes
+    private byte[] types; // ShapeType ordinal of each shape
+    private int[] argb; // colour of each shape
+    private short[] thickness; // line thickness of each shape
+    private int[] offsets; // index of each shape's first vertex, plus one extra entry
+
+    private int vertexCount; // number of vertices used in xs and ys
+    private int[] xs, ys;
+
+    private int viewed; // shapes below this may be read by a view
+
+    public ShapeStore() {
+        this(16);
+    }
+
+    /**
+     * @param capacity number of shapes to make room for
+     */
+    public ShapeStore(int capacity) {
+        this(capacity, capacity * 2);
+    }
+
+    /**
+     * @param capacity number of shapes to make room for
+     * @param vertexCapacity number of vertices to make room for
+     */
+    public ShapeStore(int capacity, int vertexCapacity) {
+        capacity = Math.max(capacity, 1);
+        vertexCapacity = Math.max(vertexCapacity, 1);
+        types = new byte[capacity];
+        argb = new int[capacity];
+        thickness = new short[capacity];
+        offsets = new int[capacity + 1];
+        xs = new int[vertexCapacity];
+        ys = new int[vertexCapacity];
+    }
+
+    /**
+     * @return the number of shapes stored
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // shares the arrays of another store, see view()
+    private ShapeStore(ShapeStore other) {
+        types = other.types;
+        argb = other.argb;
+        thickness = other.thickness;
+        offsets = other.offsets;
+        xs = other.xs;
+        ys = other.ys;
+        size = other.size;
+        vertexCount = other.vertexCount;
+    }
+
+    /**
+     * Add a shape to the end of the store
+     *
+     * @param st the type of shape
+     * @param colour colour as an ARGB value (see Color.getRGB())
+     * @param t thickness of the line
+     * @param x x coordinates of the vertices
+     * @param y y coordinates of the vertices
+     * @param count number of vertices
+     */
+    public void add(ShapeType st, int colour, int t, int[] x, int[] y, int count) {
+        unshare(size);
+        ensureCapacity(size + 1, vertexCount + count);
+        types[size] = (byte) st.ordinal();
+        argb[size] = colour;
+        thickness[size] = (short) Math.min(t, Short.MAX_VALUE);
+        System.arraycopy(x, 0, xs, vertexCount, count);
+        System.arraycopy(y, 0, ys, vertexCount, count);
+        vertexCount += count;
+        size++;
+        offsets[size] = vertexCount;
+    }
+
+    /**
+     * Copy a shape into the store
+     *
+     * @param aShape the shape to add
+     */
+    @Override
+    public void add(Shape aShape) {
+        List<Point> vertices = aShape.getVertices();
+        int count = vertices.size();
+        unshare(size);
+        ensureCapacity(size + 1, vertexCount + count);
+        types[size] = (byte) aShape.getShapeType().ordinal();
+        argb[size] = aShape.getColour().getRGB();
+        thickness[size] = (short) Math.min(aShape.getThickness(), Short.MAX_VALUE);
+        for (Point p : vertices) {
+            xs[vertexCount] = p.x;
+            ys[vertexCount] = p.y;
+            vertexCount++;
+        }
+        size++;
+        offsets[size] = vertexCount;
+    }
+
+    /**
+     * Copy a list of shapes into the store
+     *
+     * @param shapes the shapes to add
+     */
+    public void addAll(List<? extends Shape> shapes) {
+        int vertices = 0;
+        for (Shape aShape : shapes) {
+            vertices += aShape.getVertices().size();
+        }
+        ensureCapacity(size + shapes.size(), vertexCount + vertices);
+        for (Shape aShape : shapes) {
+            add(aShape);
+        }
+    }
+
+    /**
+     * Remove all the shapes. The arrays are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        vertexCount = 0;
+    }
+
+    @Override
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", Current size: " + this.size);
+        }
+        this.size = size;
+        vertexCount = offsets[size];
+    }
+
+    /* The shapes that are kept are copied into new arrays, so views of the
+     * store are not changed.
+     */
+    @Override
+    public void removeFirst(int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + size);
+        }
+        int keep = size - count;
+        int skipped = offsets[count];
+        int keptVertices = vertexCount - skipped;
+        int capacity = Math.max(keep * 2, 16);
+        types = Arrays.copyOf(Arrays.copyOfRange(types, count, size), capacity);
+        argb = Arrays.copyOf(Arrays.copyOfRange(argb, count, size), capacity);
+        thickness = Arrays.copyOf(Arrays.copyOfRange(thickness, count, size), capacity);
+        int[] kept = new int[capacity + 1];
+        for (int i = 0; i <= keep; i++) {
+            kept[i] = offsets[count + i] - skipped;
+        }
+        offsets = kept;
+        int vertexCapacity = Math.max(keptVertices * 2, 16);
+        xs = Arrays.copyOf(Arrays.copyOfRange(xs, skipped, vertexCount), vertexCapacity);
+        ys = Arrays.copyOf(Arrays.copyOfRange(ys, skipped, vertexCount), vertexCapacity);
+        size = keep;
+        vertexCount = keptVertices;
+        viewed = 0;
+    }
+
+    @Override
+    public ShapeType getShapeType(int index) {
+        return TYPES[types[index]];
+    }
+
+    /**
+     * @param index position of the shape
+     * @return colour of the shape as an ARGB value
+     */
+    @Override
+    public int getArgb(int index) {
+        return argb[index];
+    }
+
+    @Override
+    public int getThickness(int index) {
+        return thickness[index];
+    }
+
+    @Override
+    public int getVertexCount(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @param index position of the shape
+     * @param vertex which vertex of the shape, starting at 0
+     * @return x coordinate of the vertex
+     */
+    @Override
+    public int getX(int index, int vertex) {
+        return xs[offsets[index] + vertex];
+    }
+
+    /**
+     * @param index position of the shape
+     * @param vertex which vertex of the shape, starting at 0
+     * @return y coordinate of the vertex
+     */
+    @Override
+    public int getY(int index, int vertex) {
+        return ys[offsets[index] + vertex];
+    }
+
+    /**
+     * @param index position of the shape
+     * @return a Shape that reads and writes the stored shape
+     */
+    public Shape get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new ShapeView(index);
+    }
+
+    /**
+     * @return a read-only list of Shape views of the stored shapes
+     */
+    public List<Shape> asList() {
+        return new AbstractList<Shape>() {
+            @Override
+            public Shape get(int index) {
+                return ShapeStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Copy the shapes held by any ShapeSource into a new store, for example
+     * to take a snapshot of a drawing that another thread can read while the
+     * drawing carries on changing
+     *
+     * @param source the shapes to copy
+     * @return a store holding the same shapes
+     */
+    public static ShapeStore copyOf(ShapeSource source) {
+        if (source instanceof ShapeStore) {
+            ShapeStore other = (ShapeStore) source;
+            ShapeStore copy = new ShapeStore(other.size, other.vertexCount);
+            System.arraycopy(other.types, 0, copy.types, 0, other.size);
+            System.arraycopy(other.argb, 0, copy.argb, 0, other.size);
+            System.arraycopy(other.thickness, 0, copy.thickness, 0, other.size);
+            System.arraycopy(other.offsets, 0, copy.offsets, 0, other.size + 1);
+            System.arraycopy(other.xs, 0, copy.xs, 0, other.vertexCount);
+            System.arraycopy(other.ys, 0, copy.ys, 0, other.vertexCount);
+            copy.size = other.size;
+            copy.vertexCount = other.vertexCount;
+            return copy;
+        }
+        ShapeStore copy = new ShapeStore(source.size());
+        int[] x = new int[4];
+        int[] y = new int[4];
+        for (int i = 0; i < source.size(); i++) {
+            int count = source.getVertexCount(i);
+            if (count > x.length) {
+                x = new int[count];
+                y = new int[count];
+            }
+            for (int v = 0; v < count; v++) {
+                x[v] = source.getX(i, v);
+                y[v] = source.getY(i, v);
+            }
+            copy.add(source.getShapeType(i), source.getArgb(i), source.getThickness(i), x, y, count);
+        }
+        return copy;
+    }
+
+    /* The view holds on to the arrays as they are now, so it can still be
+     * read after adding shapes to this store has replaced them with bigger
+     * ones.  Shapes are only written past the end of the view, or into new
+     * arrays once truncate() has made room below it.
+     */
+    @Override
+    public ShapeSource view() {
+        viewed = Math.max(viewed, size);
+        return new ShapeRange(new ShapeStore(this), 0, size);
+    }
+
+    // copy the arrays before writing shape index if a view may be reading it
+    private void unshare(int index) {
+        if (index < viewed) {
+            types = types.clone();
+            argb = argb.clone();
+            thickness = thickness.clone();
+            offsets = offsets.clone();
+            xs = xs.clone();
+            ys = ys.clone();
+            viewed = 0;
+        }
+    }
+
+    private void ensureCapacity(int shapes, int vertices) {
+        if (shapes > types.length) {
+            int capacity = Math.max(shapes, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            argb = Arrays.copyOf(argb, capacity);
+            thickness = Arrays.copyOf(thickness, capacity);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+        if (vertices > xs.length) {
+            int capacity = Math.max(vertices, xs.length * 2);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+    }
+
+    /*
+     * A flyweight Shape that holds only its position in the store.
+     */
+    private final class ShapeView extends Shape {
+
+        private final int index;
+
+        ShapeView(int index) {
+            super(null, null, 0, null);
+            this.index = index;
+        }
+
+        @Override
+        public List<Point> getVertices() {
+            int count = getVertexCount(index);
+            List<Point> vertices = new ArrayList<>(count);
+            for (int v = 0; v < count; v++) {
+                vertices.add(new Point(getX(index, v), getY(index, v)));
+            }
+            return vertices;
+        }
+
+        /* The number of vertices is fixed by the layout of the store so
+         * only the coordinates can be changed.
+         */
+        @Override
+        public void setVertices(List<Point> vertices) {
+            if (vertices.size() != getVertexCount(index)) {
+                throw new UnsupportedOperationException("Cannot change the number of vertices of a stored shape");
+            }
+            unshare(index);
+            int first = offsets[index];
+            for (int v = 0; v < vertices.size(); v++) {
+                xs[first + v] = vertices.get(v).x;
+                ys[first + v] = vertices.get(v).y;
+            }
+        }
+
+        @Override
+        public Color getColour() {
+            return new Color(argb[index], true);
+        }
+
+        @Override
+        public void setColour(Color colour) {
+            unshare(index);
+            argb[index] = colour.getRGB();
+        }
+
+        @Override
+        public int getThickness() {
+            return thickness[index];
+        }
+
+        @Override
+        public void setThickness(int t) {
+            unshare(index);
+            thickness[index] = (short) Math.min(t, Short.MAX_VALUE);
+        }
+
+        @Override
+        public ShapeType getShapeType() {
+            return ShapeStore.this.getShapeType(index);
+        }
+
+        @Override
+        public void setShapeType(ShapeType shapeType) {
+            unshare(index);
+            types[index] = (byte) shapeType.ordinal();
+        }
+
+        @Override
+        public Rectangle getBounds() {
+            return ShapeStore.this.getBounds(index);
+        }
+    }
+}
@@ -8,5 +8,22 @@
 package simpledrawer;
 
 public enum ShapeType {
-        LINE, OVAL, TRIANGLE, QUADRILATERAL;
+        LINE(new LineDrawer()),
+        OVAL(new OvalDrawer()),
+        TRIANGLE(new TriangleDrawer()),
+        QUADRILATERAL(new QuadrilateralDrawer());
+
+        // the drawer shared by every shape of this type
+        private final drawInterface drawer;
+
+        private ShapeType(drawInterface drawer) {
+            this.drawer = drawer;
+        }
+
+        /**
+         * @return the drawer used to draw shapes of this type
+         */
+        public drawInterface getDrawer() {
+            return drawer;
+        }
 }
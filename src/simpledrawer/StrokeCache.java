@@ -0,0 +1,43 @@
+/*
+ * StrokeCache.java
+ *
+ *
+ * Shares BasicStroke objects between shapes.  A BasicStroke never changes
+ * once created so every shape with the same thickness can use the same one
+ * instead of the drawers creating a new stroke for every shape they draw.
+ *
+ */
+package simpledrawer;
+
+import java.awt.BasicStroke;
+
+public final class StrokeCache {
+
+    /**
+     * Strokes up to this thickness are created once and shared
+     */
+    public static final int MAX_CACHED_THICKNESS = 64;
+
+    // created up front so the strokes can safely be shared between threads
+    private static final BasicStroke[] STROKES = new BasicStroke[MAX_CACHED_THICKNESS + 1];
+
+    static {
+        for (int t = 0; t < STROKES.length; t++) {
+            STROKES[t] = new BasicStroke(t);
+        }
+    }
+
+    private StrokeCache() {
+    }
+
+    /**
+     * @param thickness the thickness of the line
+     * @return a stroke the same as new BasicStroke(thickness)
+     */
+    public static BasicStroke getStroke(int thickness) {
+        if (thickness >= 0 && thickness <= MAX_CACHED_THICKNESS) {
+            return STROKES[thickness];
+        }
+        return new BasicStroke(thickness); // unusually thick so not cached
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * TileCache.java
+ *
+ *
+ * A retained-mode backing store for the drawing.  The panel is divided into
+ * fixed size tiles and each tile is rendered once into a BufferedImage and
+ * then simply copied to the screen on later repaints.  Only tiles touched by
+ * a new or changed shape need to be drawn again.
+ *
+ * The tiles of the unrotated drawing cover the drawing itself rather than
+ * the panel, so they can be used at any panel size.  When the drawing is
+ * turned by a multiple of 90 degrees those same tiles are copied through
+ * the rotation: a quarter turn about a whole-pixel centre moves every pixel
+ * exactly onto another pixel, so turning the drawing copies the cached
+ * pixels instead of drawing the shapes again.  Only the parts of the drawing
+ * that were off the panel before the turn have to be drawn.  Any other
+ * angle is drawn into tiles of its own.
+ *
+ */
+package simpledrawer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TileCache {
+
+    /**
+     * Width and height of a tile in pixels
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Number of tiles kept before the least recently used are thrown away
+     */
+    public static final int DEFAULT_MAX_TILES = 128;
+
+    /**
+     * Draws the part of the scene that falls within a tile.  The graphics
+     * object passed in has already been translated and rotated so the
+     * painter just draws in normal (unrotated) drawing coordinates.
+     */
+    public interface ScenePainter {
+        public void paintScene(Graphics2D g2d, Rectangle sceneArea, float brightness);
+    }
+
+    private final ScenePainter painter;
+
+    // cached tiles, kept in least recently used order
+    private final Map<TileKey, BufferedImage> tiles;
+
+    // size of the panel the tiles were drawn for; the rotation is about the
+    // centre of the panel so if the size changes every rotated tile is wrong
+    private int width = -1, height = -1;
+
+    public TileCache(ScenePainter painter) {
+        this(painter, DEFAULT_MAX_TILES);
+    }
+
+    public TileCache(ScenePainter painter, final int maxTiles) {
+        this.painter = painter;
+        this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    /**
+     * Copy the tiles covering the clip area onto the screen, rendering any
+     * tile that is not already in the cache.
+     *
+     * @param g2d the graphics object to draw on (not rotated)
+     * @param clip the area that needs painting, null for the whole panel
+     * @param width width of the panel
+     * @param height height of the panel
+     * @param rotation rotation of the drawing in degrees
+     * @param brightness brightness the shapes are drawn with
+     */
+    public void paint(Graphics2D g2d, Rectangle clip, int width, int height,
+            int rotation, float brightness) {
+        if (width != this.width || height != this.height) {
+            invalidateRotated();
+            this.width = width;
+            this.height = height;
+        }
+        Rectangle area = clip == null ? new Rectangle(0, 0, width, height)
+                : clip.intersection(new Rectangle(0, 0, width, height));
+        if (area.isEmpty()) {
+            return;
+        }
+        if (rotation % 90 != 0) {
+            paintTiles(g2d, area, rotation, brightness);
+            return;
+        }
+        // copy the unrotated tiles under the part of the drawing that is
+        // turned onto the area.  Quadrant rotations are exact, where
+        // rotating by Math.PI / 2 leaves rounding errors in the transform.
+        int quadrants = rotation / 90;
+        Rectangle sceneArea = AffineTransform.getQuadrantRotateInstance(-quadrants, width / 2, height / 2)
+                .createTransformedShape(area).getBounds();
+        AffineTransform saved = g2d.getTransform();
+        try {
+            g2d.transform(AffineTransform.getQuadrantRotateInstance(quadrants, width / 2, height / 2));
+            paintTiles(g2d, sceneArea, 0, brightness);
+        } finally {
+            g2d.setTransform(saved);
+        }
+    }
+
+    // copy the tiles drawn at a rotation that cover an area of their grid,
+    // rendering any that are not in the cache
+    private void paintTiles(Graphics2D g2d, Rectangle area, int rotation, float brightness) {
+        int firstCol = Math.floorDiv(area.x, TILE_SIZE);
+        int lastCol = Math.floorDiv(area.x + area.width - 1, TILE_SIZE);
+        int firstRow = Math.floorDiv(area.y, TILE_SIZE);
+        int lastRow = Math.floorDiv(area.y + area.height - 1, TILE_SIZE);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                TileKey key = new TileKey(col, row, rotation, brightness);
+                BufferedImage tile = tiles.get(key);
+                if (tile == null) {
+                    tile = renderTile(key);
+                    tiles.put(key, tile);
+                }
+                g2d.drawImage(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+            }
+        }
+    }
+
+    /**
+     * Throw away every tile that overlaps the given area of the drawing.
+     * Called when a shape is added or changed.
+     *
+     * @param sceneArea area in drawing (unrotated) coordinates, which should
+     * already allow for the thickness of the lines
+     */
+    public void invalidate(Rectangle sceneArea) {
+        Iterator<TileKey> it = tiles.keySet().iterator();
+        // the same area lands on different tiles for each rotation so work
+        // out where it is on screen once per rotation
+        int lastRotation = 0;
+        Rectangle screenArea = null;
+        while (it.hasNext()) {
+            TileKey key = it.next();
+            if (screenArea == null || key.rotation != lastRotation) {
+                lastRotation = key.rotation;
+                screenArea = rotation(key.rotation).createTransformedShape(sceneArea).getBounds();
+            }
+            if (screenArea.intersects(key.col * TILE_SIZE, key.row * TILE_SIZE, TILE_SIZE, TILE_SIZE)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Throw away all cached tiles e.g. when the drawing is cleared
+     */
+    public void invalidateAll() {
+        tiles.clear();
+    }
+
+    // throw away the tiles drawn at angles other than 0, which are turned
+    // about the centre of the panel
+    private void invalidateRotated() {
+        tiles.keySet().removeIf(key -> key.rotation != 0);
+    }
+
+    private BufferedImage renderTile(TileKey key) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            // start from a fully transparent tile so the background shows through
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.setComposite(AlphaComposite.SrcOver);
+
+            Rectangle tileArea = new Rectangle(key.col * TILE_SIZE, key.row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            AffineTransform rotate = rotation(key.rotation);
+            g.translate(-tileArea.x, -tileArea.y);
+            g.transform(rotate);
+            Rectangle sceneArea;
+            try {
+                sceneArea = rotate.createInverse().createTransformedShape(tileArea).getBounds();
+            } catch (NoninvertibleTransformException ex) {
+                sceneArea = tileArea; // a rotation can always be inverted
+            }
+            painter.paintScene(g, sceneArea, key.brightness);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    // the same rotation DrawingPanel has always used: about the panel centre
+    private AffineTransform rotation(int degrees) {
+        return AffineTransform.getRotateInstance(degrees * Math.PI / 180, width / 2, height / 2);
+    }
+
+    /*
+     * Identifies a cached tile: its position plus the settings that change
+     * what is drawn on it.
+     */
+    private static final class TileKey {
+
+        final int col, row;
+        final int rotation;
+        final float brightness;
+
+        TileKey(int col, int row, int rotation, float brightness) {
+            this.col = col;
+            this.row = row;
+            this.rotation = rotation;
+            this.brightness = brightness;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey k = (TileKey) o;
+            return col == k.col && row == k.row && rotation == k.rotation
+                    && Float.floatToIntBits(brightness) == Float.floatToIntBits(k.brightness);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = col;
+            h = 31 * h + row;
+            h = 31 * h + rotation;
+            h = 31 * h + Float.floatToIntBits(brightness);
+            return h;
+        }
+    }
+}
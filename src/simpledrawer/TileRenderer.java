@@ -0,0 +1,189 @@
+/*
+ * TileRenderer.java
+ *
+ *
+ * Draws a whole drawing into one image using several threads, for saving a
+ * large drawing as a picture.  The image is divided into square tiles and
+ * each shape is put in the list of every tile its bounds overlap, keeping
+ * the order the shapes were added.  The tiles are then drawn in parallel on
+ * a ForkJoinPool, each with its own Graphics2D and ShapeBatcher.
+ *
+ * The result is the same, pixel for pixel, as drawing every shape into the
+ * image on one thread: each tile draws its shapes in the same order, so
+ * where shapes overlap the later one is on top, and breaks its batches in
+ * the same places (see ShapeBatcher.batchStarts()).  The shapes are drawn
+ * in opaque colours, as scaleColour() drops the alpha.  Each tile's
+ * Graphics2D draws on the final image clipped to the tile, rather than on a
+ * separate tile image.  Drawing on a tile image moves every shape by the tile's position,
+ * and the line widening works in floats, so a shape moved by a whole number
+ * of pixels can still gain or lose the odd pixel on a diagonal edge.  The
+ * tiles never touch the same pixels so they can be drawn at the same time.
+ * Shapes are not rotated.
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class TileRenderer {
+
+    /**
+     * Default width and height of a tile in pixels
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    /**
+     * A renderer using the common pool
+     */
+    public TileRenderer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param pool the pool the tiles are drawn on
+     * @param tileSize width and height of a tile in pixels
+     */
+    public TileRenderer(ForkJoinPool pool, int tileSize) {
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * The area covered by all the shapes in a drawing, allowing for the
+     * thickness of the lines
+     *
+     * @param shapes the shapes of the drawing
+     * @return the area, empty if there are no shapes
+     */
+    public static Rectangle getBounds(ShapeSource shapes) {
+        Rectangle area = new Rectangle();
+        for (int i = 0; i < shapes.size(); i++) {
+            Rectangle bounds = RenderWorker.paddedBounds(shapes, i);
+            if (i == 0) {
+                area.setBounds(bounds);
+            } else {
+                area.add(bounds);
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Draw the shapes in an area of a drawing into a new image
+     *
+     * @param shapes the shapes of the drawing, which must not change while
+     * they are drawn
+     * @param area the area of the drawing to draw; its top left corner is at
+     * 0,0 in the image
+     * @param brightness the brightness the shapes are drawn with
+     * @return a TYPE_INT_ARGB image the size of the area, transparent where
+     * there are no shapes
+     */
+    public BufferedImage render(ShapeSource shapes, Rectangle area, float brightness) {
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+        int cols = (area.width + tileSize - 1) / tileSize;
+        int rows = (area.height + tileSize - 1) / tileSize;
+        int[][] tiles = new int[cols * rows][];
+        int[] counts = new int[cols * rows];
+        for (int i = 0; i < shapes.size(); i++) {
+            Rectangle bounds = RenderWorker.paddedBounds(shapes, i);
+            int firstCol = Math.max(0, Math.floorDiv(bounds.x - area.x, tileSize));
+            int lastCol = Math.min(cols - 1, Math.floorDiv(bounds.x + bounds.width - area.x, tileSize));
+            int firstRow = Math.max(0, Math.floorDiv(bounds.y - area.y, tileSize));
+            int lastRow = Math.min(rows - 1, Math.floorDiv(bounds.y + bounds.height - area.y, tileSize));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    int tile = row * cols + col;
+                    if (tiles[tile] == null) {
+                        tiles[tile] = new int[16];
+                    } else if (counts[tile] == tiles[tile].length) {
+                        tiles[tile] = Arrays.copyOf(tiles[tile], counts[tile] * 2);
+                    }
+                    tiles[tile][counts[tile]++] = i;
+                }
+            }
+        }
+        BitSet batchStarts = ShapeBatcher.batchStarts(shapes, brightness);
+        pool.invoke(new TileTask(shapes, area, brightness, image, cols, tiles, counts, batchStarts,
+                0, tiles.length));
+        return image;
+    }
+
+    /*
+     * Draws a range of tiles, splitting the range in half until it is one
+     * tile
+     */
+    private final class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ShapeSource shapes;
+        private final Rectangle area;
+        private final float brightness;
+        private final BufferedImage image;
+        private final int cols;
+        private final int[][] tiles;
+        private final int[] counts;
+        private final BitSet batchStarts;
+        private final int from, to;
+
+        TileTask(ShapeSource shapes, Rectangle area, float brightness, BufferedImage image, int cols,
+                int[][] tiles, int[] counts, BitSet batchStarts, int from, int to) {
+            this.shapes = shapes;
+            this.area = area;
+            this.brightness = brightness;
+            this.image = image;
+            this.cols = cols;
+            this.tiles = tiles;
+            this.counts = counts;
+            this.batchStarts = batchStarts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(shapes, area, brightness, image, cols, tiles, counts, batchStarts, from, middle),
+                        new TileTask(shapes, area, brightness, image, cols, tiles, counts, batchStarts, middle, to));
+                return;
+            }
+            if (counts[from] == 0) {
+                return; // nothing on this tile, the image is already transparent
+            }
+            int x = (from % cols) * tileSize;
+            int y = (from / cols) * tileSize;
+            Graphics2D g = image.createGraphics();
+            try {
+                g.clipRect(x, y, tileSize, tileSize);
+                g.translate(-area.x, -area.y);
+                ShapeBatcher batcher = new ShapeBatcher();
+                batcher.begin(g, brightness);
+                int[] indexes = tiles[from];
+                int last = -1;
+                for (int n = 0; n < counts[from]; n++) {
+                    int i = indexes[n];
+                    // break the batch wherever drawing every shape would
+                    int start = batchStarts.nextSetBit(last + 1);
+                    if (start >= 0 && start <= i) {
+                        batcher.breakBatch();
+                    }
+                    batcher.add(shapes, i);
+                    last = i;
+                }
+                batcher.end();
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
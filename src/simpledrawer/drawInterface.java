@@ -7,6 +7,7 @@ package simpledrawer;
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.geom.Path2D;
 import java.util.List;
 
 /**
@@ -15,4 +16,25 @@ import java.util.List;
  */
 public interface drawInterface {
     public void drawShape(Graphics2D graphic, float currentBrightness);
+
+    /**
+     * Draw the given shape. Lets a single drawer be shared by every shape
+     * of its type instead of creating a drawer per shape.
+     *
+     * @param graphic Graphics2D object used for drawing
+     * @param shape the shape to draw
+     * @param currentBrightness the current brightness being used to draw
+     */
+    public void drawShape(Graphics2D graphic, Shape shape, float currentBrightness);
+
+    /**
+     * Add the outline of the shape to a path instead of drawing it, so that
+     * many shapes with the same colour and thickness can be drawn with one
+     * call. Stroking the path must give the same pixels as drawShape.
+     *
+     * @param path the path to add to
+     * @param store the shapes of the drawing
+     * @param index position of the shape in the store
+     */
+    public void appendShape(Path2D path, ShapeSource store, int index);
 }
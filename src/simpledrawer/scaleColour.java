@@ -12,5 +12,17 @@ import java.awt.Color;
  * @author rajbir-dhillon
  */
 public interface scaleColour {
-    public Color scaleColour(Color c, float currentBrightness);
+
+    /* The colour can be made brighter or darker.
+     * currentBrightness is a number between 0.75 and 1.25
+     * which is used to scale the brightness.  Each of the colours
+     * (red, green and blue) have their values mutiplied by
+     * currentBrightness.  If currentBrightness is < 1 the colours
+     * will get darker.  If it is > 1 they will get brighter.
+     * The values are kept no higher than 255 by ColourMath, which
+     * every drawer shares.  The scaled colour is opaque.
+     */
+    public default Color scaleColour(Color c, float currentBrightness) {
+        return new Color(ColourMath.scale(c.getRGB(), currentBrightness) & 0xffffff);
+    }
 }
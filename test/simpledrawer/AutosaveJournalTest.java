@@ -0,0 +1,275 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class AutosaveJournalTest {
+
+    private Path directory;
+
+    public AutosaveJournalTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("autosave");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /*
+     * Writes down each change replayed
+     */
+    private static class Recorder implements AutosaveJournal.Replayer {
+
+        final List<String> changes = new ArrayList<>();
+
+        @Override
+        public void reset(ShapeSource shapes, int rotation, float brightness) {
+            changes.add("reset " + shapes.size() + " " + rotation + " " + brightness);
+        }
+
+        @Override
+        public void add(ShapeType st, int argb, int thickness, int[] x, int[] y, int count) {
+            changes.add("add " + st + " " + Integer.toHexString(argb) + " " + thickness + " "
+                    + Arrays.toString(Arrays.copyOf(x, count)) + Arrays.toString(Arrays.copyOf(y, count)));
+        }
+
+        @Override
+        public void clear() {
+            changes.add("clear");
+        }
+
+        @Override
+        public void remove(int count) {
+            changes.add("remove " + count);
+        }
+
+        @Override
+        public void rotate(int amount) {
+            changes.add("rotate " + amount);
+        }
+
+        @Override
+        public void brightness(float brightness) {
+            changes.add("brightness " + brightness);
+        }
+    }
+
+    private static ShapeStore triangle() {
+        ShapeStore store = new ShapeStore();
+        store.add(ShapeType.TRIANGLE, 0xff123456, 3, new int[]{1, 2, 3}, new int[]{4, 5, 6}, 3);
+        return store;
+    }
+
+    /**
+     * Changes written to the journal are replayed in order on top of the
+     * snapshot taken when it was started.
+     */
+    @Test
+    public void testReplay() throws Exception {
+        System.out.println("replay");
+        AutosaveJournal journal = new AutosaveJournal(directory);
+        assertFalse(journal.replay(new Recorder()));
+        ShapeStore shapes = triangle();
+        journal.start(ShapeStore.copyOf(shapes), 90, 1.25F);
+        shapes.add(ShapeType.LINE, 0xff000000, 5, new int[]{-7, 8}, new int[]{9, 10}, 2);
+        journal.shapeAdded(shapes, 1);
+        journal.rotated(-90);
+        journal.brightnessChanged(0.75F);
+        journal.removed(1);
+        journal.cleared();
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        journal.close();
+
+        Recorder recorder = new Recorder();
+        assertTrue(new AutosaveJournal(directory).replay(recorder));
+        assertEquals(Arrays.asList("reset 1 90 1.25", "add LINE ff000000 5 [-7, 8][9, 10]", "rotate -90",
+                "brightness 0.75", "remove 1", "clear"), recorder.changes);
+    }
+
+    /**
+     * Only one journal can use a directory until it is closed.
+     */
+    @Test
+    public void testDirectoryLocked() throws Exception {
+        System.out.println("directory locked");
+        AutosaveJournal journal = new AutosaveJournal(directory);
+        try {
+            new AutosaveJournal(directory);
+            fail("a second journal was given the directory");
+        } catch (IOException expected) {
+            // the directory is in use
+        }
+        journal.close();
+        new AutosaveJournal(directory).close();
+    }
+
+    /**
+     * A record cut short by a crash, and anything after it, is ignored.
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+        System.out.println("torn record");
+        AutosaveJournal journal = new AutosaveJournal(directory);
+        journal.start(new ShapeStore(), 0, 1);
+        journal.rotated(90);
+        journal.rotated(180);
+        journal.close();
+        Path log = directory.resolve("journal-1.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        Recorder recorder = new Recorder();
+        new AutosaveJournal(directory).replay(recorder);
+        assertEquals(Arrays.asList("reset 0 0 1.0", "rotate 90"), recorder.changes);
+    }
+
+    /**
+     * Once the journal is too big a new generation is started from a
+     * snapshot and the old files are deleted.
+     */
+    @Test
+    public void testCompact() throws Exception {
+        System.out.println("compact");
+        AutosaveJournal journal = new AutosaveJournal(directory, 100);
+        ShapeStore shapes = triangle();
+        journal.start(ShapeStore.copyOf(shapes), 0, 1);
+        for (int i = 0; i < 5; i++) {
+            journal.shapeAdded(shapes, 0);
+        }
+        // no new snapshot is asked for until the first one is saved
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        assertTrue(journal.needsCompaction());
+        for (int i = 0; i < 5; i++) {
+            shapes.add(triangle().get(0));
+        }
+        journal.compact(ShapeStore.copyOf(shapes), 180, 1);
+        assertFalse(journal.needsCompaction());
+        journal.rotated(90);
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        journal.close();
+        assertFalse(Files.exists(directory.resolve("journal-1.log")));
+        assertFalse(Files.exists(directory.resolve("snapshot-1.spd")));
+        assertTrue(Files.exists(directory.resolve("snapshot-2.spd")));
+
+        Recorder recorder = new Recorder();
+        new AutosaveJournal(directory).replay(recorder);
+        assertEquals(Arrays.asList("reset 6 180 1.0", "rotate 90"), recorder.changes);
+    }
+
+    /**
+     * A drawing that replaced the old one, but whose snapshot was not saved
+     * before the program died, is not replayed on top of the old drawing.
+     */
+    @Test
+    public void testReplaceWithoutSnapshot() throws Exception {
+        System.out.println("replace without snapshot");
+        AutosaveJournal journal = new AutosaveJournal(directory);
+        ShapeStore shapes = triangle();
+        journal.start(ShapeStore.copyOf(shapes), 0, 1);
+        journal.rotated(90);
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        // keep the files the crash would have left behind
+        Path oldJournal = Files.copy(directory.resolve("journal-1.log"), directory.resolve("journal-1.bak"));
+        Path oldSnapshot = Files.copy(directory.resolve("snapshot-1.spd"), directory.resolve("snapshot-1.bak"));
+        ShapeStore loaded = new ShapeStore();
+        loaded.add(ShapeType.LINE, 0xff000000, 5, new int[]{-7, 8}, new int[]{9, 10}, 2);
+        journal.replace(loaded.view(), 180, 1);
+        loaded.add(ShapeType.LINE, 0xff000000, 5, new int[]{1, 2}, new int[]{3, 4}, 2);
+        journal.shapeAdded(loaded, 1);
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        journal.close();
+        Files.delete(directory.resolve("snapshot-2.spd"));
+        Files.move(oldJournal, directory.resolve("journal-1.log"));
+        Files.move(oldSnapshot, directory.resolve("snapshot-1.spd"));
+
+        Recorder recorder = new Recorder();
+        AutosaveJournal second = new AutosaveJournal(directory);
+        assertTrue(second.replay(recorder));
+        second.close();
+        assertEquals(Arrays.asList("reset 1 0 1.0", "rotate 90"), recorder.changes);
+    }
+
+    /**
+     * A DrawingPanel recovers its drawing, including changes made by undo
+     * and redo, and starts journaling again.
+     */
+    @Test
+    public void testDrawingPanel() throws Exception {
+        System.out.println("DrawingPanel recover");
+        DrawingPanel panel = new DrawingPanel();
+        AutosaveJournal journal = new AutosaveJournal(directory, 200);
+        panel.recover(journal);
+        Shape line = new ShapeFactory().getShape(Arrays.asList(new Point(1, 2), new Point(3, 4)),
+                Color.RED, 2, ShapeType.LINE);
+        Shape oval = new ShapeFactory().getShape(Arrays.asList(new Point(5, 6), new Point(7, 8)),
+                Color.BLUE, 4, ShapeType.OVAL);
+        panel.addShapes(Arrays.asList(line, oval));
+        panel.addShapes(Arrays.asList(line));
+        panel.clearDisplay();
+        panel.addShapes(Arrays.asList(oval));
+        panel.undo();
+        panel.undo(); // the three shapes are back
+        panel.undo(); // and the last one taken off
+        panel.rotate(90);
+        panel.setCurrentBrightness(0);
+        ShapeStore expected = ShapeStore.copyOf(panel.getShapes());
+        assertEquals(2, expected.size());
+        assertTrue(journal.sync(10, TimeUnit.SECONDS));
+        journal.close();
+
+        DrawingPanel recovered = new DrawingPanel();
+        AutosaveJournal second = new AutosaveJournal(directory, 200);
+        recovered.recover(second);
+        ShapeSource actual = recovered.getShapes();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getShapeType(i), actual.getShapeType(i));
+            assertEquals(expected.getArgb(i), actual.getArgb(i));
+            assertEquals(expected.getX(i, 1), actual.getX(i, 1));
+        }
+        assertEquals(0.75F, recovered.getCurrentBrightness(), 0);
+        recovered.addShapes(Arrays.asList(line));
+        assertTrue(second.sync(10, TimeUnit.SECONDS));
+        second.close();
+
+        DrawingPanel again = new DrawingPanel();
+        AutosaveJournal third = new AutosaveJournal(directory);
+        again.recover(third);
+        assertEquals(3, again.getShapes().size());
+        assertTrue(third.sync(10, TimeUnit.SECONDS));
+        third.close();
+    }
+}
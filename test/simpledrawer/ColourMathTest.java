@@ -0,0 +1,97 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ColourMathTest {
+
+    private static final float[] BRIGHTNESSES = {0.75F, 0.8F, 1, 1.1F, 1.17F, 1.25F};
+
+    public ColourMathTest() {
+    }
+
+    // the sum the drawers' scaleColour() always did
+    private static int expected(int argb, float brightness) {
+        int red = Math.min(255, (int) (((argb >> 16) & 0xff) * brightness));
+        int green = Math.min(255, (int) (((argb >> 8) & 0xff) * brightness));
+        int blue = Math.min(255, (int) ((argb & 0xff) * brightness));
+        return (argb & 0xff000000) | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Test of scale method, of class ColourMath, for every value of each
+     * channel.
+     */
+    @Test
+    public void testScale() {
+        System.out.println("scale");
+        for (float brightness : BRIGHTNESSES) {
+            for (int v = 0; v < 256; v++) {
+                int argb = 0x80000000 | (v << 16) | ((255 - v) << 8) | (v * 7 & 0xff);
+                assertEquals(Integer.toHexString(argb), expected(argb, brightness),
+                        ColourMath.scale(argb, brightness));
+            }
+        }
+    }
+
+    /**
+     * Test of the array scale methods, of class ColourMath.  Scaling an
+     * array gives the same colours as scaling each one.
+     */
+    @Test
+    public void testScaleArray() {
+        System.out.println("scale array");
+        Random random = new Random(3);
+        int[] colours = new int[1000];
+        for (int i = 0; i < colours.length; i++) {
+            colours[i] = random.nextInt();
+        }
+        for (float brightness : BRIGHTNESSES) {
+            int[] scaled = colours.clone();
+            ColourMath.scale(scaled, 10, 980, brightness);
+            assertEquals(colours[9], scaled[9]);
+            assertEquals(colours[990], scaled[990]);
+            for (int i = 10; i < 990; i++) {
+                assertEquals(ColourMath.scale(colours[i], brightness), scaled[i]);
+            }
+        }
+    }
+
+    /**
+     * Test of scalePremultiplied method, of class ColourMath.  Opaque
+     * colours are scaled as usual and the others stay within their alpha.
+     */
+    @Test
+    public void testScalePremultiplied() {
+        System.out.println("scalePremultiplied");
+        int[] colours = {0xff806040, 0xfff0f0f0, 0x00000000, 0x80706050, 0x40404040};
+        ColourMath.scalePremultiplied(colours, 0, colours.length, 1.25F);
+        assertArrayEquals(new int[]{0xffa07850, 0xffffffff, 0x00000000, 0x80807864, 0x40404040}, colours);
+    }
+
+    /**
+     * Test of scaleColour method, of interface scaleColour, which every
+     * drawer uses.  The colour is scaled by ColourMath and made opaque.
+     */
+    @Test
+    public void testScaleColour() {
+        System.out.println("scaleColour");
+        scaleColour instance = new OvalDrawer();
+        Color result = instance.scaleColour(new Color(200, 100, 50, 128), 1.3F);
+        assertEquals(new Color(255, 130, 65), result);
+        assertSame(ColourCache.getScaledColour(0x80c86432, 1.3F),
+                ColourCache.getScaledColour(0xffc86432, 1.3F));
+        assertEquals(result, ColourCache.getScaledColour(0x80c86432, 1.3F));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ColourTableTest {
+
+    public ColourTableTest() {
+    }
+
+    /**
+     * Test of lookup method, of class ColourTable.
+     */
+    @Test
+    public void testLookup() {
+        System.out.println("lookup");
+        assertEquals(Color.RED, ColourTable.lookup("red"));
+        assertEquals(Color.DARK_GRAY, ColourTable.lookup("Dark_Gray"));
+        char[] text = " xBLUEx ".toCharArray();
+        assertEquals(Color.BLUE, ColourTable.lookup(text, 2, 4));
+    }
+
+    /**
+     * An unknown name gives null. Only the upper case constants of Color
+     * are names, as before.
+     */
+    @Test
+    public void testLookupMiss() {
+        System.out.println("lookup miss");
+        assertNull(ColourTable.lookup("rouge"));
+        assertNull(ColourTable.lookup("lightGray"));
+        assertNull(ColourTable.lookup(""));
+    }
+
+    /**
+     * Test of lookup method with hex values.
+     */
+    @Test
+    public void testLookupHex() {
+        System.out.println("lookup hex");
+        assertEquals(new Color(0x12, 0xab, 0xCD), ColourTable.lookup("#12abCD"));
+        assertNull(ColourTable.lookup("#12abC"));
+        assertNull(ColourTable.lookup("#12abCG"));
+    }
+
+    /**
+     * Test of register method, of class ColourTable.
+     */
+    @Test
+    public void testRegister() {
+        System.out.println("register");
+        Color teal = new Color(0, 128, 128);
+        ColourTable.register("Teal", teal);
+        assertEquals(teal, ColourTable.lookup("TEAL"));
+        assertEquals(teal, ColourTable.lookup("teal".toCharArray(), 0, 4));
+        // enough names to make the table grow
+        for (int i = 0; i < 100; i++) {
+            ColourTable.register("test" + i, new Color(i, i, i));
+        }
+        assertEquals(new Color(42, 42, 42), ColourTable.lookup("TEST42"));
+        assertEquals(Color.RED, ColourTable.lookup("red"));
+        assertEquals(teal, ColourTable.lookup("teal"));
+    }
+
+    /**
+     * Test of setColourByString method, of class ShapeEvent.
+     */
+    @Test
+    public void testSetColourByString() {
+        System.out.println("setColourByString");
+        ShapeEvent se = new ShapeEvent();
+        se.setColourByString("Green");
+        assertEquals(Color.GREEN, se.getColour());
+        se.setColourByString("#000080");
+        assertEquals(new Color(0, 0, 128), se.getColour());
+        se.setColourByString("nonsense");
+        assertEquals(Color.BLACK, se.getColour());
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class DrawingHistoryTest {
+
+    private DrawingHistory instance;
+
+    public DrawingHistoryTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new DrawingHistory(1);
+    }
+
+    private void assertState(int first, int end, int rotation, float brightness) {
+        assertEquals(first, instance.getFirst());
+        assertEquals(end, instance.getEnd());
+        assertEquals(rotation, instance.getRotation());
+        assertEquals(brightness, instance.getBrightness(), 0);
+    }
+
+    /**
+     * Test of undo and redo methods, of class DrawingHistory.
+     */
+    @Test
+    public void testUndoRedo() {
+        System.out.println("undo and redo");
+        instance.recordAdd(3);
+        instance.recordRotate(90);
+        instance.recordClear();
+        instance.recordAdd(2);
+        instance.recordBrightness(1.2F);
+        assertState(3, 5, 90, 1.2F);
+        instance.undo();
+        assertState(3, 5, 90, 1);
+        instance.undo();
+        assertState(3, 3, 90, 1);
+        instance.undo();
+        assertState(0, 3, 90, 1);
+        instance.undo();
+        instance.undo();
+        assertState(0, 0, 0, 1);
+        assertFalse(instance.canUndo());
+        instance.undo(); // nothing to undo
+        assertState(0, 0, 0, 1);
+        for (int i = 0; i < 5; i++) {
+            instance.redo();
+        }
+        assertState(3, 5, 90, 1.2F);
+        assertFalse(instance.canRedo());
+    }
+
+    /**
+     * Recording a command after undoing throws away what could be redone.
+     */
+    @Test
+    public void testRecordAfterUndo() {
+        System.out.println("record after undo");
+        instance.recordAdd(1);
+        instance.recordAdd(1);
+        instance.undo();
+        assertTrue(instance.canRedo());
+        instance.recordRotate(-90);
+        assertFalse(instance.canRedo());
+        assertEquals(2, instance.getLength());
+        assertState(0, 1, -90, 1);
+    }
+
+    /**
+     * Changes to the brightness straight after each other are one command.
+     */
+    @Test
+    public void testBrightnessJoined() {
+        System.out.println("brightness joined");
+        instance.recordBrightness(0.8F);
+        instance.recordBrightness(0.9F);
+        instance.recordBrightness(1.1F);
+        assertEquals(1, instance.getLength());
+        instance.undo();
+        assertState(0, 0, 0, 1);
+    }
+
+    /**
+     * Test of goTo method, of class DrawingHistory, over a long history.
+     * Every position gives the same state as undoing one step at a time.
+     */
+    @Test
+    public void testGoTo() {
+        System.out.println("goTo");
+        Random random = new Random(3);
+        int length = 0;
+        for (int i = 0; i < DrawingHistory.CHECKPOINT_INTERVAL * 5 + 7; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    instance.recordClear();
+                    break;
+                case 1:
+                    instance.recordRotate(random.nextBoolean() ? 90 : -90);
+                    break;
+                default:
+                    instance.recordAdd(1 + random.nextInt(3));
+                    break;
+            }
+            if (i % 10 == 0) {
+                instance.recordRotate(0); // keeps a brightness change separate
+                instance.recordBrightness(random.nextFloat());
+                length += 2;
+            }
+            length++;
+        }
+        assertEquals(length, instance.getLength());
+        int[][] states = new int[length + 1][];
+        for (int p = length; p >= 0; p--) {
+            states[p] = new int[]{instance.getFirst(), instance.getEnd(), instance.getRotation(),
+                Float.floatToIntBits(instance.getBrightness())};
+            instance.undo();
+        }
+        for (int n = 0; n < 1000; n++) {
+            int p = random.nextInt(length + 1);
+            instance.goTo(p);
+            assertEquals(p, instance.getPosition());
+            assertArrayEquals(states[p], new int[]{instance.getFirst(), instance.getEnd(),
+                instance.getRotation(), Float.floatToIntBits(instance.getBrightness())});
+        }
+    }
+
+    /**
+     * DrawingPanel keeps cleared and undone shapes until they can no longer
+     * be brought back, and only shows the shapes in the drawing.
+     */
+    @Test
+    public void testDrawingPanel() {
+        System.out.println("DrawingPanel undo");
+        DrawingPanel panel = new DrawingPanel();
+        Shape line = new ShapeFactory().getShape(Arrays.asList(new Point(1, 2), new Point(3, 4)),
+                Color.RED, 2, ShapeType.LINE);
+        panel.addShapes(Arrays.asList(line, line));
+        panel.clearDisplay();
+        assertEquals(0, panel.getShapes().size());
+        panel.addShapes(Arrays.asList(line));
+        assertEquals(1, panel.getShapes().size());
+        panel.undo();
+        panel.undo();
+        assertEquals(2, panel.getShapes().size());
+        panel.redo();
+        assertEquals(0, panel.getShapes().size());
+        panel.rotate(90); // the shape that could be redone is thrown away
+        panel.undo();
+        panel.undo();
+        assertEquals(2, panel.getShapes().size());
+        assertEquals(Color.RED.getRGB(), panel.getShapes().getArgb(1));
+        panel.undo();
+        assertEquals(0, panel.getShapes().size());
+        assertFalse(panel.canUndo());
+    }
+
+    /**
+     * Test of the limit on commands kept, and of getOldestFirst and shift
+     * methods, of class DrawingHistory.
+     */
+    @Test
+    public void testLimit() {
+        System.out.println("limit");
+        int limit = DrawingHistory.CHECKPOINT_INTERVAL;
+        instance = new DrawingHistory(1, limit);
+        instance.recordAdd(5);
+        instance.recordClear();
+        for (int i = 2; i < 2 * limit; i++) {
+            instance.recordAdd(1);
+        }
+        // the oldest commands, with the clear, have been forgotten so the
+        // first shapes cannot be seen again
+        assertEquals(limit, instance.getPosition());
+        assertEquals(5, instance.getOldestFirst());
+        instance.recordClear();
+        instance.recordAdd(1);
+        instance.shift(5);
+        assertState(126, 127, 0, 1);
+        instance.undo();
+        assertState(126, 126, 0, 1);
+        instance.undo();
+        assertState(0, 126, 0, 1);
+        while (instance.canUndo()) {
+            instance.undo();
+        }
+        assertEquals(0, instance.getPosition());
+        assertState(0, 62, 0, 1);
+        try {
+            instance.shift(1);
+            fail("shifted shapes that can still be seen");
+        } catch (IllegalArgumentException expected) {
+            // the first shape is still in the history
+        }
+    }
+
+    /**
+     * DrawingPanel drops shapes that were cleared so long ago that undo can
+     * no longer bring them back.
+     */
+    @Test
+    public void testDrawingPanelDropsUnreachable() {
+        System.out.println("DrawingPanel drops unreachable shapes");
+        DrawingPanel panel = new DrawingPanel();
+        Shape line = new ShapeFactory().getShape(Arrays.asList(new Point(1, 2), new Point(3, 4)),
+                Color.RED, 2, ShapeType.LINE);
+        for (int i = 0; i < 4 * DrawingHistory.DEFAULT_LIMIT; i++) {
+            panel.addShapes(Arrays.asList(line, line));
+            panel.clearDisplay();
+            assertTrue(panel.getStoreSize() <= 4 * DrawingHistory.DEFAULT_LIMIT);
+        }
+        panel.addShapes(Arrays.asList(line));
+        assertEquals(1, panel.getShapes().size());
+        panel.undo();
+        panel.undo();
+        assertEquals(2, panel.getShapes().size());
+        assertEquals(Color.RED.getRGB(), panel.getShapes().getArgb(1));
+        // the store never needs much more than the shapes the history can reach
+        assertTrue(panel.getStoreSize() <= 4 * DrawingHistory.DEFAULT_LIMIT);
+    }
+}
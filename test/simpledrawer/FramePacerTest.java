@@ -0,0 +1,77 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class FramePacerTest {
+
+    private static final long MS = 1000000;
+
+    public FramePacerTest() {
+    }
+
+    /**
+     * Test of frameShown method, of class FramePacer.  Frames are due a
+     * fixed period apart however long each one takes to draw.
+     */
+    @Test
+    public void testFixedRate() {
+        System.out.println("fixed rate");
+        FramePacer instance = new FramePacer(50); // every 20ms
+        assertEquals(20 * MS, instance.frameShown(1000 * MS));
+        // the frame took 3ms, so the next is due 17ms later at 1040ms
+        assertEquals(17 * MS, instance.frameShown(1023 * MS));
+        // woken a little late, the next frame is still due at 1060ms
+        assertEquals(18 * MS, instance.frameShown(1042 * MS));
+        assertEquals(20 * MS, instance.frameShown(1060 * MS));
+    }
+
+    /**
+     * Test of frameShown method, of class FramePacer.  A late frame skips
+     * the times missed rather than making the next frames hurry.
+     */
+    @Test
+    public void testLateFrame() {
+        System.out.println("late frame");
+        FramePacer instance = new FramePacer(50);
+        instance.frameShown(0);
+        // the frame due at 20ms took until 75ms
+        assertEquals(0, instance.frameShown(75 * MS));
+        assertEquals(20 * MS, instance.frameShown(75 * MS));
+        assertEquals(15 * MS, instance.frameShown(100 * MS));
+    }
+
+    /**
+     * Test of the frame times kept by FramePacer
+     */
+    @Test
+    public void testFrameTimes() {
+        System.out.println("frame times");
+        FramePacer instance = new FramePacer(0);
+        assertEquals(0, instance.getFrames());
+        assertEquals(0, instance.getMeanMillis(), 0);
+        // no cap, so there is never a wait
+        assertEquals(0, instance.frameShown(0));
+        assertEquals(0, instance.frameShown(10 * MS));
+        assertEquals(0, instance.frameShown(30 * MS));
+        assertEquals(0, instance.frameShown(40 * MS));
+        assertEquals(3, instance.getFrames());
+        assertEquals(40.0 / 3, instance.getMeanMillis(), 1e-9);
+        assertEquals(Math.sqrt(200.0 / 9), instance.getDeviationMillis(), 1e-6);
+        assertEquals(20, instance.getLongestMillis(), 0);
+
+        instance.reset();
+        instance.frameShown(100 * MS);
+        assertEquals(0, instance.getFrames());
+        assertEquals(0, instance.getLongestMillis(), 0);
+    }
+}
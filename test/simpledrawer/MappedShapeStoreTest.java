@@ -0,0 +1,117 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class MappedShapeStoreTest {
+
+    private Path file;
+
+    public MappedShapeStoreTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("shapes", ".spms");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Shapes written to a store can be read back after it is reopened.
+     */
+    @Test
+    public void testCreateAndReopen() throws IOException {
+        System.out.println("create and open");
+        try (MappedShapeStore store = MappedShapeStore.create(file)) {
+            store.add(ShapeType.LINE, Color.RED.getRGB(), 5, new int[]{1, 2}, new int[]{3, 4}, 2);
+            store.add(ShapeType.QUADRILATERAL, Color.BLUE.getRGB(), 40,
+                    new int[]{-1, 20, 30, -40}, new int[]{5, -6, 70, 80}, 4);
+        }
+        assertEquals(MappedShapeStore.HEADER_SIZE + 2 * MappedShapeStore.RECORD_SIZE, Files.size(file));
+
+        try (MappedShapeStore store = MappedShapeStore.open(file, false)) {
+            assertEquals(2, store.size());
+            assertEquals(ShapeType.LINE, store.getShapeType(0));
+            assertEquals(Color.RED.getRGB(), store.getArgb(0));
+            assertEquals(5, store.getThickness(0));
+            assertEquals(2, store.getVertexCount(0));
+            assertEquals(2, store.getX(0, 1));
+            assertEquals(4, store.getY(0, 1));
+            assertEquals(ShapeType.QUADRILATERAL, store.getShapeType(1));
+            assertEquals(4, store.getVertexCount(1));
+            assertEquals(-40, store.getX(1, 3));
+            assertEquals(-6, store.getY(1, 1));
+            assertEquals(40, store.getThickness(1));
+        }
+    }
+
+    /**
+     * Test of add method on a store opened read only.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyAdd() throws IOException {
+        System.out.println("read only add");
+        MappedShapeStore.create(file).close();
+        try (MappedShapeStore store = MappedShapeStore.open(file, false)) {
+            store.add(ShapeType.LINE, 0, 1, new int[]{0, 0}, new int[]{0, 0}, 2);
+        }
+    }
+
+    /**
+     * Test of open method with a file that is not a store.
+     */
+    @Test(expected = IOException.class)
+    public void testOpenNotAStore() throws IOException {
+        System.out.println("open bad file");
+        Files.write(file, new byte[64]);
+        MappedShapeStore.open(file, false).close();
+    }
+
+    /**
+     * A read-only store can be drawn on in a DrawingPanel.  The shapes
+     * drawn go on top and the file is not changed.
+     */
+    @Test
+    public void testDrawOnReadOnly() throws IOException {
+        System.out.println("draw on read only");
+        try (MappedShapeStore store = MappedShapeStore.create(file)) {
+            store.add(ShapeType.LINE, Color.RED.getRGB(), 5, new int[]{1, 2}, new int[]{3, 4}, 2);
+        }
+        try (MappedShapeStore store = MappedShapeStore.open(file, false)) {
+            DrawingPanel panel = new DrawingPanel();
+            panel.setShapes(store);
+            Shape line = new ShapeFactory().getShape(Arrays.asList(new Point(5, 6), new Point(7, 8)),
+                    Color.BLUE, 3, ShapeType.LINE);
+            panel.addShapes(Arrays.asList(line));
+            panel.undo();
+            panel.addShapes(Arrays.asList(line, line));
+            ShapeSource shapes = panel.getShapes();
+            assertEquals(3, shapes.size());
+            assertEquals(Color.RED.getRGB(), shapes.getArgb(0));
+            assertEquals(Color.BLUE.getRGB(), shapes.getArgb(2));
+            assertEquals(7, shapes.getX(2, 1));
+            assertEquals(1, store.size());
+        }
+    }
+}
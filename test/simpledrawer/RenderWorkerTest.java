@@ -0,0 +1,209 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class RenderWorkerTest {
+
+    private ShapeStore shapes;
+    private AtomicInteger frames;
+    private RenderWorker instance;
+
+    public RenderWorkerTest() {
+    }
+
+    @Before
+    public void setUp() {
+        shapes = new ShapeStore();
+        frames = new AtomicInteger();
+        instance = new RenderWorker(frames::incrementAndGet);
+    }
+
+    private void addLine(int x1, int y1, int x2, int y2) {
+        shapes.add(ShapeType.LINE, 0xffff0000, 2, new int[]{x1, x2}, new int[]{y1, y2}, 2);
+        int i = shapes.size() - 1;
+        Rectangle bounds = shapes.getBounds(i);
+        bounds.grow(4, 4);
+        instance.insert(i, bounds);
+    }
+
+    // the latest frame as copied to the screen
+    private BufferedImage screen() {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        assertTrue(instance.paint(g));
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Frames are drawn in the background and show the shapes inserted and
+     * not removed.
+     */
+    @Test
+    public void testFrames() throws InterruptedException {
+        System.out.println("frames");
+        assertFalse(instance.paint(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()));
+        addLine(10, 20, 90, 20);
+        addLine(10, 60, 90, 60);
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        assertEquals(1, frames.get());
+        assertEquals(0xffff0000, screen().getRGB(50, 60));
+
+        // nothing has changed so no new frame is drawn
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        assertEquals(1, frames.get());
+
+        instance.remove(1, new Rectangle(6, 56, 88, 8));
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        BufferedImage screen = screen();
+        assertEquals(0, screen.getRGB(50, 60));
+        assertEquals(0xffff0000, screen.getRGB(50, 20));
+
+        // rotated 180 degrees about the centre the top line is at the bottom
+        instance.request(shapes.view(), 100, 100, 180, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        assertEquals(0xffff0000, screen().getRGB(50, 80));
+
+        instance.clear();
+        instance.request(shapes.view(), 100, 100, 180, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        assertEquals(0, screen().getRGB(50, 80));
+    }
+
+    /**
+     * Test of insertAll method, of class RenderWorker.  The shapes given
+     * replace the drawing, with their bounds worked out by the worker.
+     */
+    @Test
+    public void testInsertAll() throws InterruptedException {
+        System.out.println("insertAll");
+        addLine(10, 20, 90, 20);
+        shapes.add(ShapeType.LINE, 0xff0000ff, 2, new int[]{10, 90}, new int[]{60, 60}, 2);
+        shapes.add(ShapeType.LINE, 0xff0000ff, 2, new int[]{10, 90}, new int[]{80, 80}, 2);
+        instance.insertAll(1, 3);
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+        BufferedImage screen = screen();
+        assertEquals(0, screen.getRGB(50, 20));
+        assertEquals(0xff0000ff, screen.getRGB(50, 60));
+        assertEquals(0xff0000ff, screen.getRGB(50, 80));
+    }
+
+    /**
+     * A frame that fails, even with an Error, is logged and the worker
+     * carries on drawing the frames asked for after it.
+     */
+    @Test
+    public void testWorkerSurvivesFailure() throws InterruptedException {
+        System.out.println("worker survives failure");
+        final AtomicInteger calls = new AtomicInteger();
+        instance = new RenderWorker(new Runnable() {
+            @Override
+            public void run() {
+                int call = calls.incrementAndGet();
+                if (call == 1) {
+                    throw new IllegalStateException("first frame fails");
+                } else if (call == 2) {
+                    throw new OutOfMemoryError("second frame fails");
+                }
+            }
+        });
+        Logger logger = Logger.getLogger(RenderWorker.class.getName());
+        logger.setLevel(Level.OFF); // the failure is expected
+        try {
+            addLine(10, 20, 90, 20);
+            instance.request(shapes.view(), 100, 100, 0, 1);
+            assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+
+            addLine(10, 60, 90, 60);
+            instance.request(shapes.view(), 100, 100, 0, 1);
+            assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+            assertEquals(2, calls.get());
+
+            addLine(10, 80, 90, 80);
+            instance.request(shapes.view(), 100, 100, 0, 1);
+            assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+            assertEquals(3, calls.get());
+            BufferedImage screen = screen();
+            assertEquals(0xffff0000, screen.getRGB(50, 20));
+            assertEquals(0xffff0000, screen.getRGB(50, 60));
+            assertEquals(0xffff0000, screen.getRGB(50, 80));
+        } finally {
+            logger.setLevel(null);
+        }
+    }
+
+    /**
+     * Asking for a frame returns straight away however many shapes there
+     * are, and the shapes added while a frame is drawn are in the next one.
+     */
+    @Test
+    public void testRequestDoesNotWait() throws InterruptedException {
+        System.out.println("request does not wait");
+        for (int i = 0; i < 100000; i++) {
+            addLine(i % 100, 0, 99 - i % 100, 99);
+        }
+        long start = System.nanoTime();
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        addLine(0, 50, 99, 50);
+        instance.request(shapes.view(), 100, 100, 0, 1);
+        long took = System.nanoTime() - start;
+        assertTrue("request took " + took / 1000000 + "ms", took < TimeUnit.MILLISECONDS.toNanos(16));
+        assertTrue(instance.awaitFrame(60, TimeUnit.SECONDS));
+        assertEquals(0xffff0000, screen().getRGB(0, 50));
+    }
+
+    /**
+     * Applying the brightness to the finished frame gives the same pixels as
+     * drawing every shape in its scaled colour.
+     */
+    @Test
+    public void testBrightness() throws InterruptedException {
+        System.out.println("brightness");
+        int[] colours = {0xffff0000, 0xff3080c0, 0x80ffffff, 0xff102030, 0xffd0d000};
+        for (int i = 0; i < 50; i++) {
+            shapes.add(ShapeType.values()[i % 4], colours[i % colours.length], 1 + i % 3,
+                    new int[]{(i * 37) % 90, 5 + i % 30, 50}, new int[]{(i * 53) % 90, 5 + i % 40, 95 - i}, 3);
+            Rectangle bounds = shapes.getBounds(i);
+            bounds.grow(6, 6);
+            instance.insert(i, bounds);
+        }
+        for (float brightness : new float[]{0.75F, 1, 1.1F, 1.25F}) {
+            instance.request(shapes.view(), 100, 100, 0, brightness);
+            assertTrue(instance.awaitFrame(10, TimeUnit.SECONDS));
+            BufferedImage expected = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = expected.createGraphics();
+            ShapeBatcher batcher = new ShapeBatcher();
+            batcher.begin(g, brightness);
+            for (int i = 0; i < shapes.size(); i++) {
+                batcher.add(shapes, i);
+            }
+            batcher.end();
+            g.dispose();
+            assertArrayEquals("brightness " + brightness, expected.getRGB(0, 0, 100, 100, null, 0, 100),
+                    screen().getRGB(0, 0, 100, 100, null, 0, 100));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeEventGeneratorFromJSONTest {
+
+    private ShapeEventGeneratorFromJSON instance;
+    private final List<ShapeEvent> events = new ArrayList<>();
+
+    public ShapeEventGeneratorFromJSONTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new ShapeEventGeneratorFromJSON();
+        instance.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                events.add(se);
+            }
+        });
+    }
+
+    /**
+     * Test of processScriptFile method, of class ShapeEventGeneratorFromJSON,
+     * with the example file.
+     */
+    @Test
+    public void testProcessScriptFile() throws IOException {
+        System.out.println("processScriptFile");
+        instance.processScriptFile("stored_shapes.json");
+        assertEquals(3, events.size());
+        ShapeEvent expected = new ShapeEvent(20, 40, 70, 90, Color.BLUE, 5, ShapeType.OVAL, "SHAPE");
+        assertEquals(expected.toString(), events.get(1).toString());
+        assertEquals(Color.GREEN, events.get(2).getColour());
+    }
+
+    /**
+     * Test of processScript method with a plain array, colour names and
+     * missing and unknown values.
+     */
+    @Test
+    public void testProcessScript() throws IOException {
+        System.out.println("processScript");
+        instance.processScript(new StringReader("[{\"xStart\":1,\"colour\":\"red\",\"shapeType\":\"oval\","
+                + "\"extra\":[1,{\"a\":2}]},{\"thickness\":null,\"colour\":{\"value\":-16777088}}]"));
+        assertEquals(2, events.size());
+        ShapeEvent expected = new ShapeEvent(1, 0, 0, 0, Color.RED, 0, ShapeType.OVAL, "SHAPE");
+        assertEquals(expected.toString(), events.get(0).toString());
+        assertEquals(new Color(0, 0, 128), events.get(1).getColour());
+        assertEquals(ShapeType.LINE, events.get(1).getShapeType());
+    }
+
+    /**
+     * Shapes are passed on as they are read, before the end of the array.
+     */
+    @Test
+    public void testEventsBeforeEnd() {
+        System.out.println("events before end");
+        try {
+            instance.processScript(new StringReader("{\"listOfShapeEvents\":[{\"xStart\":5},{\"xStart\":6},"));
+            fail("truncated document was read");
+        } catch (IOException ex) {
+            assertEquals(2, events.size());
+        }
+    }
+
+    /**
+     * Test of processScript method with a shape type that does not exist.
+     */
+    @Test(expected = IOException.class)
+    public void testBadShapeType() throws IOException {
+        System.out.println("bad shape type");
+        instance.processScript(new StringReader("[{\"shapeType\":\"HEXAGON\"}]"));
+    }
+}
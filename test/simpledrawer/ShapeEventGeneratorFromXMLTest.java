@@ -0,0 +1,271 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeEventGeneratorFromXMLTest {
+
+    private Path file;
+    private ShapeEventGeneratorFromXML instance;
+    private final List<String> events = new ArrayList<>();
+
+    public ShapeEventGeneratorFromXMLTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("shapes", ".xml");
+        instance = new ShapeEventGeneratorFromXML();
+        instance.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                events.add(se.toString());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private void process(String shapes) throws IOException, SAXException {
+        String script = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<shape_script>\n" + shapes + "</shape_script>\n";
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        instance.processScriptFile(file.toString());
+    }
+
+    /**
+     * Test of processScriptFile method, of class ShapeEventGeneratorFromXML.
+     */
+    @Test
+    public void testProcessScriptFile() throws Exception {
+        System.out.println("processScriptFile");
+        process("<shape>\n <type> Oval </type>\n <start><x>5</x><y>-6</y></start>\n"
+                + " <end><x>\n70\n</x><y>80</y></end>\n <colour>Light_Gray</colour>\n"
+                + " <thickness>10</thickness>\n</shape>\n");
+        ShapeEvent expected = new ShapeEvent(5, -6, 70, 80, Color.LIGHT_GRAY, 10, ShapeType.OVAL, "SHAPE");
+        assertEquals(1, events.size());
+        assertEquals(expected.toString(), events.get(0));
+    }
+
+    /**
+     * The parser hands over the text of an element in several pieces when
+     * it holds a character reference.  The pieces must be joined up.
+     */
+    @Test
+    public void testSplitText() throws Exception {
+        System.out.println("split text");
+        process("<shape><type>li&#110;e</type><start><x>1&#50;3</x><y>4</y></start>"
+                + "<end><x>5</x><y>6</y></end><colour>r&#101;d</colour><thickness>7</thickness></shape>\n");
+        ShapeEvent expected = new ShapeEvent(123, 4, 5, 6, Color.RED, 7, ShapeType.LINE, "SHAPE");
+        assertEquals(expected.toString(), events.get(0));
+    }
+
+    /**
+     * An unknown colour is drawn in black.
+     */
+    @Test
+    public void testUnknownColour() throws Exception {
+        System.out.println("unknown colour");
+        process("<shape><type>line</type><colour>lightGray</colour></shape>\n");
+        assertTrue(events.get(0).contains("colour=" + Color.BLACK));
+    }
+
+    /**
+     * Test of processScriptFile method with a coordinate that is not a number.
+     */
+    @Test(expected = SAXException.class)
+    public void testBadNumber() throws Exception {
+        System.out.println("bad number");
+        process("<shape><type>line</type><start><x>12a</x></start></shape>\n");
+    }
+
+    /**
+     * Test of processScriptFileInParallel method, of class
+     * ShapeEventGeneratorFromXML. Small chunks are used so the file is
+     * split many times, and the events must come out in file order.
+     */
+    @Test
+    public void testProcessScriptFileInParallel() throws Exception {
+        System.out.println("processScriptFileInParallel");
+        StringBuilder shapes = new StringBuilder("<!-- a <comment> -->\n");
+        for (int i = 0; i < 500; i++) {
+            shapes.append("<shape><type>").append(i % 2 == 0 ? "line" : "oval")
+                    .append("</type><start><x>").append(i).append("</x><y>").append(-i)
+                    .append("</y></start><end><x>1</x><y>2</y></end><colour>blue</colour>")
+                    .append("<thickness>").append(i % 9).append("</thickness></shape>\n");
+        }
+        process(shapes.toString());
+        List<String> serial = new ArrayList<>(events);
+        events.clear();
+        instance.processScriptFileInParallel(file.toString(), 4, 1000);
+        assertEquals(500, events.size());
+        assertEquals(serial, events);
+    }
+
+    /**
+     * Test of processScriptFileInParallel method, of class
+     * ShapeEventGeneratorFromXML, with shape tags that have attributes or
+     * spaces and with "<shape>" in comments and CDATA sections.  The file is
+     * still split, only at the real shapes.
+     */
+    @Test
+    public void testParallelShapeTags() throws Exception {
+        System.out.println("parallel shape tags");
+        StringBuilder shapes = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            shapes.append(i % 3 == 0 ? "<shape id=\"a>b\">" : i % 3 == 1 ? "<shape >" : "<shape>")
+                    .append("<!-- <shape> --><type>line</type><start><x>").append(i)
+                    .append("</x><y><![CDATA[").append(i % 7).append("]]></y></start>")
+                    .append("<colour><![CDATA[red]]></colour></shape>\n<!-- </shape><shape> -->\n");
+        }
+        process(shapes.toString());
+        List<String> serial = new ArrayList<>(events);
+        events.clear();
+        try (ScriptChunker chunker = new ScriptChunker(file, 1000)) {
+            assertTrue(chunker.isSplit());
+            assertTrue(chunker.hasChunk(1));
+            assertFalse(chunker.isRest(1));
+        }
+        instance.processScriptFileInParallel(file.toString(), 4, 1000);
+        assertEquals(300, events.size());
+        assertEquals(serial, events);
+    }
+
+    /**
+     * A file whose shapes are inside a wrapper element cannot be split, so
+     * it is parsed in one go and every shape is still found.
+     */
+    @Test
+    public void testParallelWrappedShapes() throws Exception {
+        System.out.println("parallel wrapped shapes");
+        StringBuilder shapes = new StringBuilder("<layer>\n");
+        for (int i = 0; i < 300; i++) {
+            shapes.append("<shape><type>oval</type><start><x>").append(i)
+                    .append("</x></start><end><x>5</x><y>5</y></end></shape>\n");
+        }
+        shapes.append("</layer>\n");
+        process(shapes.toString());
+        List<String> serial = new ArrayList<>(events);
+        events.clear();
+        try (ScriptChunker chunker = new ScriptChunker(file, 1000)) {
+            assertFalse(chunker.isSplit());
+        }
+        instance.processScriptFileInParallel(file.toString(), 4, 1000);
+        assertEquals(300, events.size());
+        assertEquals(serial, events);
+    }
+
+    /**
+     * Shapes are split off in chunks up to the first shape inside a wrapper
+     * element, and the rest of the file is parsed in one go.
+     */
+    @Test
+    public void testParallelShapesThenWrapper() throws Exception {
+        System.out.println("parallel shapes then wrapper");
+        StringBuilder shapes = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            shapes.append(i == 400 ? "<layer>\n" : "").append("<shape><type>line</type><start><x>")
+                    .append(i).append("</x></start></shape>\n");
+        }
+        shapes.append("</layer>\n");
+        process(shapes.toString());
+        List<String> serial = new ArrayList<>(events);
+        events.clear();
+        try (ScriptChunker chunker = new ScriptChunker(file, 1000)) {
+            assertTrue(chunker.isSplit());
+            int chunks = 0;
+            while (chunker.hasChunk(chunks)) {
+                chunks++;
+            }
+            assertTrue(chunks > 2);
+            assertTrue(chunker.isRest(chunks - 1));
+            assertFalse(chunker.isRest(chunks - 2));
+        }
+        instance.processScriptFileInParallel(file.toString(), 4, 1000);
+        assertEquals(600, events.size());
+        assertEquals(serial, events);
+    }
+
+    /**
+     * A parse error in any chunk is reported.
+     */
+    @Test(expected = SAXException.class)
+    public void testParallelBadNumber() throws Exception {
+        System.out.println("parallel bad number");
+        StringBuilder shapes = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            shapes.append("<shape><type>line</type><start><x>").append(i == 70 ? "x" : "1")
+                    .append("</x></start></shape>\n");
+        }
+        String script = "<shape_script>\n" + shapes + "</shape_script>\n";
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        instance.processScriptFileInParallel(file.toString(), 2, 200);
+    }
+
+    /**
+     * Test of setReuseEvents method, of class ShapeEventGeneratorFromXML.
+     * Every shape comes in the same event, and snapshots keep their values.
+     */
+    @Test
+    public void testReuseEvents() throws Exception {
+        System.out.println("setReuseEvents");
+        final List<ShapeEvent> seen = new ArrayList<>();
+        final List<ShapeEvent> kept = new ArrayList<>();
+        final List<ShapeEvent> batched = new ArrayList<>();
+        instance.registerShapeEventListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                assertTrue(se.isReused());
+                seen.add(se);
+                kept.add(se.snapshot());
+            }
+        });
+        instance.registerShapeEventBatchListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                batched.add(se);
+            }
+        }, 100, 60000);
+        instance.setReuseEvents(true);
+        process("<shape><type>oval</type><start><x>1</x></start><colour>red</colour></shape>\n"
+                + "<shape><start><y>2</y></start></shape>\n");
+        assertSame(seen.get(0), seen.get(1));
+        assertEquals(new ShapeEvent(1, 0, 0, 0, Color.RED, 0, ShapeType.OVAL, "SHAPE").toString(),
+                kept.get(0).toString());
+        assertEquals(new ShapeEvent(0, 2, 0, 0, Color.BLACK, 0, ShapeType.LINE, "SHAPE").toString(),
+                kept.get(1).toString());
+        assertEquals(kept.get(0).toString(), batched.get(0).toString());
+        assertEquals(kept.get(1).toString(), batched.get(1).toString());
+        assertFalse(kept.get(0).isReused());
+    }
+
+    /**
+     * A snapshot cannot be changed.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotUnchangeable() {
+        System.out.println("snapshot");
+        new ShapeEvent().snapshot().setXStart(1);
+    }
+}
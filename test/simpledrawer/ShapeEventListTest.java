@@ -0,0 +1,227 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeEventListTest {
+
+    private ShapeEventList instance;
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+
+    public ShapeEventListTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new ShapeEventList();
+    }
+
+    private static ShapeEvent event(int n) {
+        return new ShapeEvent(n, 0, 0, 0, Color.BLACK, 1, ShapeType.LINE, "SHAPE");
+    }
+
+    /* a listener that records the events it gets, after waiting for the
+     * latch to open */
+    private ShapeEventListener recorder(final CountDownLatch latch) {
+        return new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                received.add(se.getXStart());
+            }
+        };
+    }
+
+    /**
+     * A queued listener gets every event in order on another thread.
+     */
+    @Test
+    public void testQueuedInOrder() throws InterruptedException {
+        System.out.println("queued in order");
+        final List<Thread> threads = new ArrayList<>();
+        instance.addListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                threads.add(Thread.currentThread());
+                received.add(se.getXStart());
+            }
+        }, 16, ShapeEventList.BackPressure.BLOCK);
+        for (int i = 0; i < 1000; i++) {
+            instance.fireShapeEvent(this, event(i));
+        }
+        assertTrue(instance.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(1000, received.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+        assertNotSame(Thread.currentThread(), threads.get(0));
+        assertEquals(0, instance.getDroppedEvents());
+    }
+
+    /**
+     * A full DROP queue throws new events away.
+     */
+    @Test
+    public void testDrop() throws InterruptedException {
+        System.out.println("drop");
+        CountDownLatch latch = new CountDownLatch(1);
+        instance.addListener("SHAPE", recorder(latch), 2, ShapeEventList.BackPressure.DROP);
+        instance.fireShapeEvent(this, event(0));
+        Thread.sleep(100); // the listener takes event 0 and waits
+        for (int i = 1; i < 10; i++) {
+            instance.fireShapeEvent(this, event(i));
+        }
+        latch.countDown();
+        assertTrue(instance.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2), received);
+        assertEquals(7, instance.getDroppedEvents());
+    }
+
+    /**
+     * A full COALESCE queue throws the oldest events away.
+     */
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        System.out.println("coalesce");
+        CountDownLatch latch = new CountDownLatch(1);
+        instance.addListener("SHAPE", recorder(latch), 2, ShapeEventList.BackPressure.COALESCE);
+        instance.fireShapeEvent(this, event(0));
+        Thread.sleep(100);
+        for (int i = 1; i < 10; i++) {
+            instance.fireShapeEvent(this, event(i));
+        }
+        latch.countDown();
+        assertTrue(instance.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 8, 9), received);
+        assertEquals(7, instance.getDroppedEvents());
+    }
+
+    /**
+     * Test of addBatchListener method, of class ShapeEventList.  Batches are
+     * passed on when full, when the originator changes and on flush().
+     */
+    @Test
+    public void testBatchListener() {
+        System.out.println("addBatchListener");
+        final List<Integer> sizes = new ArrayList<>();
+        instance.addBatchListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                fail("events should come in batches");
+            }
+
+            @Override
+            public void processShapeEvents(Object originator, List<ShapeEvent> events) {
+                sizes.add(events.size());
+                for (ShapeEvent se : events) {
+                    received.add(se.getXStart());
+                }
+            }
+        }, 4, 60000);
+        for (int i = 0; i < 10; i++) {
+            instance.fireShapeEvent(this, event(i));
+        }
+        instance.fireShapeEvent(instance, event(10));
+        assertEquals(Arrays.asList(4, 4, 2), sizes);
+        instance.flush();
+        assertEquals(Arrays.asList(4, 4, 2, 1), sizes);
+        assertEquals(11, received.size());
+    }
+
+    /**
+     * A batch is passed on once its first event has waited the delay, even
+     * if no more events arrive.
+     */
+    @Test
+    public void testBatchDelay() throws InterruptedException {
+        System.out.println("batch delay");
+        final CountDownLatch passed = new CountDownLatch(1);
+        instance.addBatchListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                received.add(se.getXStart());
+                passed.countDown();
+            }
+        }, 1000, 50);
+        instance.fireShapeEvent(this, event(1));
+        assertTrue(received.isEmpty());
+        assertTrue(passed.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1), received);
+        instance.fireShapeEvent(this, event(2));
+        instance.flush();
+        assertEquals(Arrays.asList(1, 2), received);
+    }
+
+    /**
+     * An exception thrown by a batch listener called by the timer is thrown
+     * to the thread firing the events at its next event.
+     */
+    @Test
+    public void testBatchDelayFailure() throws InterruptedException {
+        System.out.println("batch delay failure");
+        final CountDownLatch called = new CountDownLatch(1);
+        instance.addBatchListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                called.countDown();
+                throw new IllegalStateException("stop");
+            }
+        }, 1000, 10);
+        instance.fireShapeEvent(this, event(1));
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        try {
+            instance.fireShapeEvent(this, event(2));
+            fail("the listener's exception was lost");
+        } catch (IllegalStateException expected) {
+            assertEquals("stop", expected.getMessage());
+        }
+    }
+
+    /**
+     * A listener can add and remove listeners while an event is being
+     * fired.
+     */
+    @Test
+    public void testRegisterDuringDispatch() {
+        System.out.println("register during dispatch");
+        final ShapeEventListener late = new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                received.add(-se.getXStart());
+            }
+        };
+        instance.addListener("SHAPE", new ShapeEventListener() {
+            @Override
+            public void processShapeEvent(Object originator, ShapeEvent se) {
+                received.add(se.getXStart());
+                instance.removeListener("SHAPE", this);
+                instance.addListener("SHAPE", late);
+            }
+        });
+        instance.fireShapeEvent(this, event(1));
+        instance.fireShapeEvent(this, event(2));
+        assertEquals(Arrays.asList(1, -2), received);
+        assertEquals(1, instance.getListeners("SHAPE").size());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeExporterTest {
+
+    private Path file;
+    private ShapeStore shapes;
+    private final List<ShapeEvent> events = new ArrayList<>();
+    private final ShapeEventListener listener = new ShapeEventListener() {
+        @Override
+        public void processShapeEvent(Object originator, ShapeEvent se) {
+            events.add(se);
+        }
+    };
+
+    public ShapeExporterTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("shapes", null);
+        shapes = new ShapeStore();
+        shapes.add(ShapeType.LINE, Color.RED.getRGB(), 5, new int[]{5, 100}, new int[]{5, 10}, 2);
+        shapes.add(ShapeType.OVAL, 0xFF123456, 12, new int[]{20, 70}, new int[]{40, 90}, 2);
+        shapes.add(ShapeType.TRIANGLE, Color.BLUE.getRGB(), 1, new int[]{0, 10, 5}, new int[]{0, 0, 8}, 3);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private void assertExported() {
+        List<ShapeEvent> expected = new ArrayList<>();
+        expected.add(new ShapeEvent(5, 5, 100, 10, Color.RED, 5, ShapeType.LINE, "SHAPE"));
+        expected.add(new ShapeEvent(20, 40, 70, 90, new Color(0x123456), 12, ShapeType.OVAL, "SHAPE"));
+        expected.add(new ShapeEvent(0, 0, 10, 0, Color.BLUE, 1, ShapeType.LINE, "SHAPE"));
+        expected.add(new ShapeEvent(10, 0, 5, 8, Color.BLUE, 1, ShapeType.LINE, "SHAPE"));
+        expected.add(new ShapeEvent(5, 8, 0, 0, Color.BLUE, 1, ShapeType.LINE, "SHAPE"));
+        assertEquals(expected.size(), events.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), events.get(i).toString());
+        }
+    }
+
+    /**
+     * Test of writeXML method, of class ShapeExporter.
+     */
+    @Test
+    public void testWriteXML() throws Exception {
+        System.out.println("writeXML");
+        new ShapeExporter().writeXML(shapes, file);
+        String xml = new String(Files.readAllBytes(file), "utf-8");
+        assertTrue(xml.startsWith("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<shape_script>\n    <shape>\n"));
+        assertTrue(xml.contains("<colour>red</colour>"));
+        ShapeEventGeneratorFromXML generator = new ShapeEventGeneratorFromXML();
+        generator.registerShapeEventListener("SHAPE", listener);
+        generator.processScriptFile(file.toString());
+        assertExported();
+    }
+
+    /**
+     * Test of writeJSON method, of class ShapeExporter.
+     */
+    @Test
+    public void testWriteJSON() throws IOException {
+        System.out.println("writeJSON");
+        new ShapeExporter().writeJSON(shapes, file);
+        ShapeEventGeneratorFromJSON generator = new ShapeEventGeneratorFromJSON();
+        generator.registerShapeEventListener("SHAPE", listener);
+        generator.processScriptFile(file.toString());
+        assertExported();
+    }
+
+    /**
+     * Test of view method, of class ShapeStore, which the saver exports so
+     * the drawing can change while it is saved.  Changes made after the
+     * view is taken are not exported.
+     */
+    @Test
+    public void testView() throws IOException {
+        System.out.println("view");
+        ShapeSource view = shapes.view();
+        shapes.get(0).setColour(Color.GREEN);
+        shapes.truncate(1);
+        shapes.add(ShapeType.OVAL, Color.BLACK.getRGB(), 2, new int[]{1, 2}, new int[]{3, 4}, 2);
+        new ShapeExporter().writeJSON(view, file);
+        ShapeEventGeneratorFromJSON generator = new ShapeEventGeneratorFromJSON();
+        generator.registerShapeEventListener("SHAPE", listener);
+        generator.processScriptFile(file.toString());
+        assertExported();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of ShapeFileWriter and ShapeFileReader
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeFileTest {
+
+    private Path file;
+
+    public ShapeFileTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("shapes", ".spd");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static void assertSameShapes(ShapeSource expected, ShapeSource actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getShapeType(i), actual.getShapeType(i));
+            assertEquals(expected.getArgb(i), actual.getArgb(i));
+            assertEquals(expected.getThickness(i), actual.getThickness(i));
+            assertEquals(expected.getVertexCount(i), actual.getVertexCount(i));
+            for (int v = 0; v < expected.getVertexCount(i); v++) {
+                assertEquals(expected.getX(i, v), actual.getX(i, v));
+                assertEquals(expected.getY(i, v), actual.getY(i, v));
+            }
+        }
+    }
+
+    /**
+     * Shapes written to a file are read back the same, including
+     * coordinates far apart whose differences overflow an int.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        System.out.println("write and read");
+        ShapeStore shapes = new ShapeStore();
+        Random random = new Random(7);
+        ShapeType[] types = ShapeType.values();
+        int[] x = new int[4];
+        int[] y = new int[4];
+        for (int i = 0; i < 5000; i++) {
+            ShapeType st = types[random.nextInt(types.length)];
+            int count = st == ShapeType.TRIANGLE ? 3 : st == ShapeType.QUADRILATERAL ? 4 : 2;
+            for (int v = 0; v < count; v++) {
+                x[v] = random.nextInt(2000) - 1000;
+                y[v] = random.nextInt(2000) - 1000;
+            }
+            shapes.add(st, new Color(random.nextInt(20) * 10, 0, 0, 255 - i % 3).getRGB(),
+                    1 + random.nextInt(40), x, y, count);
+        }
+        shapes.add(ShapeType.LINE, 0, 1, new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE},
+                new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE}, 2);
+        shapes.add(ShapeType.LINE, 0, 1, new int[]{0, 1}, new int[]{0, 1}, 2);
+
+        new ShapeFileWriter().write(shapes, file);
+        assertSameShapes(shapes, new ShapeFileReader().read(file));
+    }
+
+    /**
+     * Test of readBounds method, of class ShapeFileReader.
+     */
+    @Test
+    public void testReadBounds() throws IOException {
+        System.out.println("readBounds");
+        ShapeStore shapes = new ShapeStore();
+        shapes.add(ShapeType.LINE, 0, 1, new int[]{10, 50}, new int[]{20, 5}, 2);
+        shapes.add(ShapeType.TRIANGLE, 0, 1, new int[]{-3, 4, 5}, new int[]{6, 7, 80}, 3);
+        // the second vertex of an oval is its width and height
+        shapes.add(ShapeType.OVAL, 0, 1, new int[]{500, 10}, new int[]{500, 10}, 2);
+        new ShapeFileWriter().write(shapes, file);
+        assertEquals(new Rectangle(-3, 5, 513, 505), ShapeFileReader.readBounds(file));
+    }
+
+    /**
+     * An empty drawing can be saved and loaded.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        System.out.println("empty");
+        new ShapeFileWriter().write(new ShapeStore(), file);
+        assertEquals(ShapeFileWriter.HEADER_SIZE, Files.size(file));
+        assertEquals(0, new ShapeFileReader().read(file).size());
+    }
+
+    /**
+     * Test of read method with a file that has been cut short.
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        System.out.println("truncated");
+        ShapeStore shapes = new ShapeStore();
+        shapes.add(ShapeType.LINE, 0, 1, new int[]{1000, 2000}, new int[]{3000, 4000}, 2);
+        new ShapeFileWriter().write(shapes, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+        new ShapeFileReader().read(file);
+    }
+
+    /**
+     * Test of read method with a file that is not a shape file.
+     */
+    @Test(expected = IOException.class)
+    public void testNotAShapeFile() throws IOException {
+        System.out.println("not a shape file");
+        Files.write(file, new byte[100]);
+        new ShapeFileReader().read(file);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeGridTest {
+
+    private ShapeGrid instance;
+
+    public ShapeGridTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new ShapeGrid(10);
+    }
+
+    /**
+     * Test of query method, of class ShapeGrid.
+     */
+    @Test
+    public void testQueryFindsOnlyNearbyShapes() {
+        System.out.println("query");
+        instance.insert(0, new Rectangle(0, 0, 5, 5));
+        instance.insert(1, new Rectangle(100, 100, 5, 5));
+        instance.insert(2, new Rectangle(-50, -50, 5, 5));
+        assertArrayEquals(new int[]{0}, instance.query(new Rectangle(0, 0, 8, 8)));
+        assertArrayEquals(new int[]{1}, instance.query(new Rectangle(95, 95, 8, 8)));
+        assertArrayEquals(new int[]{2}, instance.query(new Rectangle(-48, -48, 1, 1)));
+        assertArrayEquals(new int[0], instance.query(new Rectangle(40, 40, 5, 5)));
+    }
+
+    /**
+     * Shapes covering several cells must only be returned once and in the
+     * order they were inserted.
+     */
+    @Test
+    public void testQueryIsSortedWithoutDuplicates() {
+        System.out.println("query sorted");
+        instance.insert(0, new Rectangle(0, 0, 50, 50));
+        instance.insert(1, new Rectangle(5, 5, 5, 5));
+        instance.insert(2, new Rectangle(0, 0, 30, 30));
+        assertArrayEquals(new int[]{0, 1, 2}, instance.query(new Rectangle(0, 0, 40, 40)));
+    }
+
+    /**
+     * Test of insert method with a shape too large to store in cells.
+     */
+    @Test
+    public void testOversizedShapeAlwaysReturned() {
+        System.out.println("insert oversized");
+        instance.insert(0, new Rectangle(0, 0, 10000, 10000));
+        instance.insert(1, new Rectangle(500, 500, 5, 5));
+        assertArrayEquals(new int[]{0, 1}, instance.query(new Rectangle(500, 500, 1, 1)));
+        assertArrayEquals(new int[]{0}, instance.query(new Rectangle(-500, -500, 1, 1)));
+    }
+
+    /**
+     * Test of clear method, of class ShapeGrid.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        instance.insert(0, new Rectangle(0, 0, 5, 5));
+        instance.insert(1, new Rectangle(0, 0, 10000, 10000));
+        instance.clear();
+        assertArrayEquals(new int[0], instance.query(new Rectangle(0, 0, 5, 5)));
+    }
+
+    /**
+     * Test of remove method, of class ShapeGrid.
+     */
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+        instance.insert(0, new Rectangle(0, 0, 25, 5));
+        instance.insert(1, new Rectangle(10, 0, 5, 5));
+        instance.insert(2, new Rectangle(-1000, -1000, 5000, 5000));
+        instance.remove(2, new Rectangle(-1000, -1000, 5000, 5000));
+        instance.remove(1, new Rectangle(10, 0, 5, 5));
+        assertArrayEquals(new int[]{0}, instance.query(new Rectangle(0, 0, 30, 8)));
+    }
+}
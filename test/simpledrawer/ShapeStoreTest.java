@@ -0,0 +1,161 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class ShapeStoreTest {
+
+    private ShapeStore instance;
+
+    public ShapeStoreTest() {
+    }
+
+    @Before
+    public void setUp() {
+        // start small so adding shapes has to grow the arrays
+        instance = new ShapeStore(1);
+    }
+
+    private static Shape triangle() {
+        List<Point> points = Arrays.asList(new Point(1, 2), new Point(30, 4), new Point(5, 60));
+        return new Shape(points, Color.RED, 7, ShapeType.TRIANGLE);
+    }
+
+    /**
+     * Test of add method, of class ShapeStore.
+     */
+    @Test
+    public void testAddShape() {
+        System.out.println("add");
+        instance.add(new Shape(Arrays.asList(new Point(0, 0), new Point(10, 10)), Color.BLUE, 3, ShapeType.LINE));
+        instance.add(triangle());
+        assertEquals(2, instance.size());
+        assertEquals(ShapeType.TRIANGLE, instance.getShapeType(1));
+        assertEquals(Color.RED.getRGB(), instance.getArgb(1));
+        assertEquals(7, instance.getThickness(1));
+        assertEquals(3, instance.getVertexCount(1));
+        assertEquals(30, instance.getX(1, 1));
+        assertEquals(60, instance.getY(1, 2));
+        assertEquals(10, instance.getX(0, 1));
+    }
+
+    /**
+     * Test of get method, of class ShapeStore. The view must look just like
+     * the shape that was added.
+     */
+    @Test
+    public void testGetView() {
+        System.out.println("get");
+        Shape original = triangle();
+        instance.add(original);
+        Shape view = instance.get(0);
+        assertEquals(original.getVertices(), view.getVertices());
+        assertEquals(original.getColour(), view.getColour());
+        assertEquals(original.getThickness(), view.getThickness());
+        assertEquals(original.getShapeType(), view.getShapeType());
+        assertEquals(original.getBounds(), view.getBounds());
+    }
+
+    /**
+     * Changes made through a view are written to the store.
+     */
+    @Test
+    public void testViewSetters() {
+        System.out.println("view setters");
+        instance.add(triangle());
+        Shape view = instance.get(0);
+        view.setColour(Color.GREEN);
+        view.setThickness(2);
+        view.setVertices(Arrays.asList(new Point(9, 9), new Point(8, 8), new Point(7, 7)));
+        assertEquals(Color.GREEN.getRGB(), instance.getArgb(0));
+        assertEquals(2, instance.getThickness(0));
+        assertEquals(7, instance.getX(0, 2));
+    }
+
+    /**
+     * Test of getBounds method for an oval, whose second vertex is its size.
+     */
+    @Test
+    public void testOvalBounds() {
+        System.out.println("getBounds oval");
+        instance.add(ShapeType.OVAL, Color.BLACK.getRGB(), 1, new int[]{10, 20}, new int[]{5, 30}, 2);
+        assertEquals(new Rectangle(10, 5, 20, 30), instance.getBounds(0));
+    }
+
+    /**
+     * Test of clear method, of class ShapeStore.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        instance.add(triangle());
+        instance.clear();
+        assertEquals(0, instance.size());
+        instance.add(triangle());
+        assertEquals(1, instance.size());
+        assertEquals(1, instance.getX(0, 0));
+    }
+
+    /**
+     * Test of view method, of class ShapeStore.  Shapes that replace ones
+     * taken off by truncate() are not seen by a view taken before.
+     */
+    @Test
+    public void testViewAfterTruncate() {
+        System.out.println("view after truncate");
+        instance.add(triangle());
+        instance.add(ShapeType.LINE, Color.RED.getRGB(), 1, new int[]{5, 6}, new int[]{7, 8}, 2);
+        ShapeSource view = instance.view();
+        instance.truncate(1);
+        instance.add(ShapeType.OVAL, Color.BLUE.getRGB(), 3, new int[]{50, 60}, new int[]{70, 80}, 2);
+        instance.get(0).setColour(Color.GREEN);
+        assertEquals(2, view.size());
+        assertEquals(ShapeType.LINE, view.getShapeType(1));
+        assertEquals(Color.RED.getRGB(), view.getArgb(1));
+        assertEquals(5, view.getX(1, 0));
+        assertEquals(Color.RED.getRGB(), view.getArgb(0));
+        assertEquals(ShapeType.OVAL, instance.getShapeType(1));
+        assertEquals(50, instance.getX(1, 0));
+        assertEquals(Color.GREEN.getRGB(), instance.getArgb(0));
+    }
+
+    /**
+     * Test of removeFirst method, of class ShapeStore.  The shapes left move
+     * down and a view taken before still sees them all.
+     */
+    @Test
+    public void testRemoveFirst() {
+        System.out.println("removeFirst");
+        instance.add(triangle());
+        instance.add(ShapeType.LINE, Color.BLUE.getRGB(), 1, new int[]{5, 6}, new int[]{7, 8}, 2);
+        instance.add(ShapeType.OVAL, Color.GREEN.getRGB(), 3, new int[]{50, 60}, new int[]{70, 80}, 2);
+        ShapeSource view = instance.view();
+        instance.removeFirst(2);
+        assertEquals(1, instance.size());
+        assertEquals(ShapeType.OVAL, instance.getShapeType(0));
+        assertEquals(60, instance.getX(0, 1));
+        assertEquals(80, instance.getY(0, 1));
+        instance.add(triangle());
+        assertEquals(2, instance.size());
+        assertEquals(3, instance.getVertexCount(1));
+        assertEquals(5, instance.getX(1, 2));
+        assertEquals(3, view.size());
+        assertEquals(Color.RED.getRGB(), view.getArgb(0));
+        assertEquals(5, view.getX(1, 0));
+    }
+}
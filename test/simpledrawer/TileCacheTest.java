@@ -0,0 +1,120 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class TileCacheTest {
+
+    private static final int SIZE = 512;
+
+    private ShapeStore shapes;
+    private int tilesDrawn;
+    private TileCache instance;
+
+    public TileCacheTest() {
+    }
+
+    @Before
+    public void setUp() {
+        shapes = new ShapeStore();
+        shapes.add(ShapeType.LINE, 0xffff0000, 3, new int[]{10, 500}, new int[]{20, 300}, 2);
+        shapes.add(ShapeType.TRIANGLE, 0x800000ff, 5, new int[]{40, 400, 100}, new int[]{450, 60, 30}, 3);
+        shapes.add(ShapeType.OVAL, 0xff00ff00, 1, new int[]{200, 150}, new int[]{100, 220}, 2);
+        tilesDrawn = 0;
+        instance = new TileCache(new TileCache.ScenePainter() {
+            @Override
+            public void paintScene(Graphics2D g2d, Rectangle sceneArea, float brightness) {
+                tilesDrawn++;
+                ShapeBatcher batcher = new ShapeBatcher();
+                batcher.begin(g2d, brightness);
+                for (int i = 0; i < shapes.size(); i++) {
+                    batcher.add(shapes, i);
+                }
+                batcher.end();
+            }
+        });
+    }
+
+    private BufferedImage paint(int width, int height, int rotation) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        instance.paint(g, null, width, height, rotation, 1);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Test of paint method, of class TileCache.  Turning the drawing by
+     * quarter turns copies the tiles already drawn, moving every pixel
+     * exactly.
+     */
+    @Test
+    public void testQuarterTurnsReuseTiles() {
+        System.out.println("quarter turns reuse tiles");
+        BufferedImage unrotated = paint(SIZE, SIZE, 0);
+        assertEquals(4, tilesDrawn);
+        for (int rotation : new int[]{90, 180, 270, -90, 360}) {
+            BufferedImage rotated = paint(SIZE, SIZE, rotation);
+            assertEquals("rotation " + rotation, 4, tilesDrawn);
+            int quadrants = Math.floorMod(rotation / 90, 4);
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    // turn the pixel back to where it is in the drawing
+                    int sx = x, sy = y;
+                    for (int q = 0; q < quadrants; q++) {
+                        int t = sx;
+                        sx = sy;
+                        sy = SIZE - 1 - t;
+                    }
+                    if (rotated.getRGB(x, y) != unrotated.getRGB(sx, sy)) {
+                        fail("rotation " + rotation + " differs at " + x + "," + y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of paint method, of class TileCache.  The unrotated tiles are
+     * kept when the panel changes size, but other angles are drawn again.
+     */
+    @Test
+    public void testResize() {
+        System.out.println("resize");
+        paint(SIZE, SIZE, 0);
+        paint(SIZE, SIZE, 45);
+        int drawn = tilesDrawn;
+        paint(SIZE / 2, SIZE / 2, 0);
+        assertEquals(drawn, tilesDrawn);
+        paint(SIZE / 2, SIZE / 2, 45);
+        assertTrue(tilesDrawn > drawn);
+    }
+
+    /**
+     * Test of invalidate method, of class TileCache.  Only the tiles under
+     * the area are drawn again, at every rotation.
+     */
+    @Test
+    public void testInvalidate() {
+        System.out.println("invalidate");
+        paint(SIZE, SIZE, 0);
+        instance.invalidate(new Rectangle(10, 10, 20, 20));
+        paint(SIZE, SIZE, 90);
+        assertEquals(5, tilesDrawn);
+        paint(SIZE, SIZE, 0);
+        assertEquals(5, tilesDrawn);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package simpledrawer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author rajbir-dhillon
+ */
+public class TileRendererTest {
+
+    // scaleColour() makes every colour opaque, so there is no alpha here
+    private static final int[] COLOURS = {0xffff0000, 0xff00ff00, 0xff0000ff, 0xffffff00, 0xff000000};
+
+    public TileRendererTest() {
+    }
+
+    private static ShapeStore randomShapes(int count, long seed) {
+        Random random = new Random(seed);
+        ShapeStore store = new ShapeStore();
+        ShapeType[] types = ShapeType.values();
+        int[] x = new int[4];
+        int[] y = new int[4];
+        for (int i = 0; i < count; i++) {
+            ShapeType st = types[random.nextInt(types.length)];
+            int vertices = st == ShapeType.TRIANGLE ? 3 : st == ShapeType.QUADRILATERAL ? 4 : 2;
+            x[0] = random.nextInt(400) - 50;
+            y[0] = random.nextInt(300) - 50;
+            for (int v = 1; v < vertices; v++) {
+                x[v] = st == ShapeType.OVAL ? 5 + random.nextInt(80) : x[0] + random.nextInt(160) - 80;
+                y[v] = st == ShapeType.OVAL ? 5 + random.nextInt(80) : y[0] + random.nextInt(160) - 80;
+            }
+            // runs of the same colour and thickness make batches
+            int colour = COLOURS[(i / 3 + random.nextInt(2)) % COLOURS.length];
+            store.add(st, colour, 1 + random.nextInt(3) * 4, x, y, vertices);
+        }
+        return store;
+    }
+
+    // every shape drawn into the image on one thread
+    private static BufferedImage renderSerial(ShapeSource shapes, Rectangle area, float brightness) {
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.translate(-area.x, -area.y);
+        ShapeBatcher batcher = new ShapeBatcher();
+        batcher.begin(g, brightness);
+        for (int i = 0; i < shapes.size(); i++) {
+            batcher.add(shapes, i);
+        }
+        batcher.end();
+        g.dispose();
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * Test of render method, of class TileRenderer.  Drawing the tiles in
+     * parallel gives exactly the same pixels as drawing on one thread,
+     * including overlapping shapes that cross tile edges.
+     */
+    @Test
+    public void testRenderMatchesSerial() {
+        System.out.println("render");
+        ShapeStore shapes = randomShapes(3000, 5);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Rectangle area : new Rectangle[]{TileRenderer.getBounds(shapes), new Rectangle(-20, 10, 333, 222)}) {
+                for (int tileSize : new int[]{37, 64, 256}) {
+                    BufferedImage expected = renderSerial(shapes, area, 1.1F);
+                    BufferedImage actual = new TileRenderer(pool, tileSize).render(shapes, area, 1.1F);
+                    assertEquals(area.width, actual.getWidth());
+                    assertEquals(area.height, actual.getHeight());
+                    assertArrayEquals("tile size " + tileSize, pixels(expected), pixels(actual));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test of getBounds method, of class TileRenderer.
+     */
+    @Test
+    public void testGetBounds() {
+        System.out.println("getBounds");
+        ShapeStore shapes = new ShapeStore();
+        assertTrue(TileRenderer.getBounds(shapes).isEmpty());
+        shapes.add(ShapeType.LINE, 0xff000000, 3, new int[]{10, 20}, new int[]{30, 5}, 2);
+        shapes.add(ShapeType.OVAL, 0xff000000, 1, new int[]{50, 10}, new int[]{50, 10}, 2);
+        assertEquals(new Rectangle(5, 0, 58, 63), TileRenderer.getBounds(shapes));
+    }
+}